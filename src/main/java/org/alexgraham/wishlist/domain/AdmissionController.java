@@ -0,0 +1,399 @@
+package org.alexgraham.wishlist.domain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-owner and per-wishlist admission control for the WishlistService.
+ *
+ * Each owner and each wishlist gets a token bucket, so one client flooding the service only
+ * exhausts its own limit. Buckets are kept in a ConcurrentHashMap, so admitting a call takes no
+ * lock shared with other keys. The map is bounded by a sweep: when a new key takes it past
+ * maxTrackedKeys, the thread that added it trims the map by an eighth, dropping buckets that have
+ * refilled (which a new bucket would replace exactly) first, then the least recently used. Other
+ * threads carry on meanwhile, so the map can briefly hold a few more keys than the bound.
+ *
+ * Writes name a wishlist, not its owner, so the controller also remembers (in a map bounded the
+ * same way) the owner of each wishlist it has seen. That lets a write by an owner over their limit
+ * be rejected before the wishlist is read.
+ */
+public class AdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    public enum Scope {
+        OWNER, WISHLIST
+    }
+
+    private static final AdmissionController UNLIMITED = new AdmissionController(null, null, null);
+
+    private final Limiter owners;
+    private final Limiter wishlists;
+    private final BoundedMap<UUID> ownersByWishlist;
+
+    /**
+     * @param ownerRatePerSecond sustained calls per second allowed for one owner
+     * @param ownerBurst calls allowed for one owner in a burst
+     * @param wishlistRatePerSecond sustained calls per second allowed for one wishlist
+     * @param wishlistBurst calls allowed for one wishlist in a burst
+     * @param maxTrackedKeys the most owners (and, separately, wishlists) to keep buckets for
+     */
+    public AdmissionController(double ownerRatePerSecond,
+                               int ownerBurst,
+                               double wishlistRatePerSecond,
+                               int wishlistBurst,
+                               int maxTrackedKeys) {
+        this(new Limiter(Scope.OWNER, ownerRatePerSecond, ownerBurst, maxTrackedKeys),
+                new Limiter(Scope.WISHLIST, wishlistRatePerSecond, wishlistBurst, maxTrackedKeys),
+                new BoundedMap<>(maxTrackedKeys));
+    }
+
+    private AdmissionController(Limiter owners, Limiter wishlists, BoundedMap<UUID> ownersByWishlist) {
+        this.owners = owners;
+        this.wishlists = wishlists;
+        this.ownersByWishlist = ownersByWishlist;
+    }
+
+    /**
+     * @return an AdmissionController that admits every call
+     */
+    public static AdmissionController unlimited() {
+        return UNLIMITED;
+    }
+
+    void admitOwner(UUID ownerId) {
+        if (owners != null) {
+            owners.admit(ownerId);
+        }
+    }
+
+    void admitWishlist(UUID wishlistId) {
+        if (wishlists != null) {
+            wishlists.admit(wishlistId);
+        }
+    }
+
+    /**
+     * Admits a write to one or more wishlists: charges each wishlist and, where the wishlist's
+     * owner is already known, the owner. Each owner is charged once per write, however many of
+     * the wishlists they own. If any of them is over its limit, the tokens already taken are
+     * returned, so a rejected write costs none of its other scopes anything.
+     *
+     * @return the write, to complete with {@link Write#admitOwnerOf} once each wishlist is read
+     */
+    Write admitWrite(UUID... wishlistIds) {
+        Write write = new Write();
+        for (UUID wishlistId : wishlistIds) {
+            write.take(wishlists, wishlistId);
+        }
+        for (UUID wishlistId : wishlistIds) {
+            UUID ownerId = knownOwner(wishlistId);
+            if (ownerId != null) {
+                write.charge(ownerId);
+            }
+        }
+        return write;
+    }
+
+    /**
+     * Remembers a wishlist's owner, so later writes to it can be charged to the owner up front.
+     */
+    void rememberOwner(UUID wishlistId, UUID ownerId) {
+        if (ownersByWishlist != null && wishlistId != null && ownerId != null) {
+            ownersByWishlist.put(wishlistId, ownerId);
+        }
+    }
+
+    private UUID knownOwner(UUID wishlistId) {
+        if (ownersByWishlist == null || wishlistId == null) {
+            return null;
+        }
+        return ownersByWishlist.get(wishlistId);
+    }
+
+    /**
+     * @return a snapshot of the configured limits, and of calls admitted and rejected so far
+     */
+    public Stats stats() {
+        if (owners == null) {
+            return new Stats(Limiter.Counts.UNLIMITED, Limiter.Counts.UNLIMITED);
+        }
+        return new Stats(owners.counts(), wishlists.counts());
+    }
+
+    /**
+     * The tokens taken so far for one write.
+     */
+    final class Write {
+        private final Set<UUID> chargedOwners = new HashSet<>(2);
+        private final List<Runnable> refunds = new ArrayList<>(4);
+
+        private Write() {
+        }
+
+        /**
+         * Charges the owner of a wishlist that has just been read, unless this write has already
+         * charged them, and remembers them as the wishlist's owner.
+         *
+         * @throws AdmissionRejectedException if the owner is over their limit; every token this
+         *         write took is returned first
+         */
+        void admitOwnerOf(UUID wishlistId, UUID ownerId) {
+            rememberOwner(wishlistId, ownerId);
+            charge(ownerId);
+        }
+
+        private void charge(UUID ownerId) {
+            if (chargedOwners.add(ownerId)) {
+                take(owners, ownerId);
+            }
+        }
+
+        private void take(Limiter limiter, UUID key) {
+            if (limiter == null) {
+                return;
+            }
+            try {
+                TokenBucket bucket = limiter.admit(key);
+                if (bucket != null) {
+                    refunds.add(() -> limiter.refund(bucket));
+                }
+            } catch (AdmissionRejectedException e) {
+                refunds.forEach(Runnable::run);
+                refunds.clear();
+                throw e;
+            }
+        }
+    }
+
+    private static final class Limiter {
+        private final Scope scope;
+        private final double ratePerSecond;
+        private final int burst;
+        private final BoundedMap<TokenBucket> buckets;
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Limiter(Scope scope, double ratePerSecond, int burst, int maxTrackedKeys) {
+            if (ratePerSecond <= 0) {
+                throw new IllegalArgumentException(scope.name().toLowerCase() + " rate must be positive, ratePerSecond="
+                        + ratePerSecond);
+            }
+            if (burst < 1) {
+                throw new IllegalArgumentException(scope.name().toLowerCase() + " burst must be at least 1, burst="
+                        + burst);
+            }
+            this.scope = scope;
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            // refilled buckets first, since dropping them loses nothing; then the least recently used
+            this.buckets = new BoundedMap<>(maxTrackedKeys,
+                    bucket -> bucket.isFull() ? Long.MIN_VALUE : bucket.lastUsedNanos());
+        }
+
+        /**
+         * @return the bucket the call took a token from, or null if there is no key to limit
+         */
+        TokenBucket admit(UUID key) {
+            if (key == null) {
+                return null; // invalid arguments are rejected by the service itself
+            }
+            TokenBucket bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(ratePerSecond, burst));
+
+            if (bucket.tryAcquire()) {
+                admitted.increment();
+                return bucket;
+            }
+            rejected.increment();
+            logger.debug("Rejected call over the {} limit for id={}", scope, key);
+            throw new AdmissionRejectedException(scope, "Too many requests for " + scope.name().toLowerCase() + "=" + key);
+        }
+
+        void refund(TokenBucket bucket) {
+            bucket.release();
+            admitted.decrement();
+        }
+
+        Counts counts() {
+            return new Counts(ratePerSecond, burst, admitted.sum(), rejected.sum(), buckets.size());
+        }
+
+        private static final class Counts {
+            static final Counts UNLIMITED = new Counts(Double.POSITIVE_INFINITY, Integer.MAX_VALUE, 0, 0, 0);
+
+            final double ratePerSecond;
+            final int burst;
+            final long admitted;
+            final long rejected;
+            final int trackedKeys;
+
+            Counts(double ratePerSecond, int burst, long admitted, long rejected, int trackedKeys) {
+                this.ratePerSecond = ratePerSecond;
+                this.burst = burst;
+                this.admitted = admitted;
+                this.rejected = rejected;
+                this.trackedKeys = trackedKeys;
+            }
+
+            @Override
+            public String toString() {
+                return "rate=" + ratePerSecond + "/s burst=" + burst + " admitted=" + admitted + " rejected=" + rejected
+                        + " tracked=" + trackedKeys;
+            }
+        }
+    }
+
+    /**
+     * A ConcurrentHashMap that a sweep trims back under a bound, as described on the class.
+     */
+    private static final class BoundedMap<V> {
+        private final ConcurrentMap<UUID, V> entries = new ConcurrentHashMap<>();
+        private final AtomicBoolean sweeping = new AtomicBoolean();
+        private final int maxEntries;
+        private final int sweepTo;
+        private final ToLongFunction<V> evictionOrder; // lowest first; null to evict in no particular order
+
+        BoundedMap(int maxEntries) {
+            this(maxEntries, null);
+        }
+
+        BoundedMap(int maxEntries, ToLongFunction<V> evictionOrder) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("maxTrackedKeys must be positive, maxTrackedKeys=" + maxEntries);
+            }
+            this.maxEntries = maxEntries;
+            this.sweepTo = maxEntries - maxEntries / 8; // so sweeps are rare, however full the map stays
+            this.evictionOrder = evictionOrder;
+        }
+
+        V get(UUID key) {
+            return entries.get(key);
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        void put(UUID key, V value) {
+            if (entries.put(key, value) == null) {
+                sweepIfFull(key);
+            }
+        }
+
+        V computeIfAbsent(UUID key, Function<UUID, V> create) {
+            V value = entries.get(key);
+            if (value != null) {
+                return value;
+            }
+            V created = create.apply(key);
+            value = entries.putIfAbsent(key, created);
+            if (value != null) {
+                return value; // another thread added it first
+            }
+            sweepIfFull(key);
+            return created;
+        }
+
+        // never evicts the key just added, which is about to be used
+        private void sweepIfFull(UUID added) {
+            if (entries.size() <= maxEntries || !sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int excess = entries.size() - sweepTo;
+                if (evictionOrder == null) {
+                    Iterator<UUID> keys = entries.keySet().iterator();
+                    while (excess > 0 && keys.hasNext()) {
+                        if (!keys.next().equals(added)) {
+                            keys.remove();
+                            excess--;
+                        }
+                    }
+                    return;
+                }
+                // ranked once up front, since the values keep changing while the sweep runs
+                List<Map.Entry<UUID, V>> candidates = new ArrayList<>(entries.entrySet());
+                long[] ranks = new long[candidates.size()];
+                Integer[] order = new Integer[candidates.size()];
+                for (int i = 0; i < ranks.length; i++) {
+                    ranks[i] = evictionOrder.applyAsLong(candidates.get(i).getValue());
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Long.compare(ranks[a], ranks[b]));
+                for (int i = 0; excess > 0 && i < order.length; i++) {
+                    Map.Entry<UUID, V> candidate = candidates.get(order[i]);
+                    if (!candidate.getKey().equals(added) && entries.remove(candidate.getKey(), candidate.getValue())) {
+                        excess--;
+                    }
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+    /**
+     * A point-in-time view of the configured limits and of admission decisions.
+     */
+    public static final class Stats {
+        private final Limiter.Counts owner;
+        private final Limiter.Counts wishlist;
+
+        private Stats(Limiter.Counts owner, Limiter.Counts wishlist) {
+            this.owner = owner;
+            this.wishlist = wishlist;
+        }
+
+        /**
+         * @return the sustained calls per second allowed for one owner or wishlist; infinite if unlimited
+         */
+        public double ratePerSecond(Scope scope) {
+            return counts(scope).ratePerSecond;
+        }
+
+        /**
+         * @return the calls allowed in a burst for one owner or wishlist; Integer.MAX_VALUE if unlimited
+         */
+        public int burst(Scope scope) {
+            return counts(scope).burst;
+        }
+
+        public long admitted(Scope scope) {
+            return counts(scope).admitted;
+        }
+
+        public long rejected(Scope scope) {
+            return counts(scope).rejected;
+        }
+
+        /**
+         * @return the number of owners or wishlists currently being tracked
+         */
+        public int trackedKeys(Scope scope) {
+            return counts(scope).trackedKeys;
+        }
+
+        private Limiter.Counts counts(Scope scope) {
+            return scope == Scope.OWNER ? owner : wishlist;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[owner " + owner + ", wishlist " + wishlist + "]";
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.alexgraham.wishlist.domain;
+
+/**
+ * Thrown when a call is rejected because its owner or wishlist has exceeded its request rate.
+ *
+ * The call had no effect, and may be retried later.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final AdmissionController.Scope scope;
+
+    public AdmissionRejectedException(AdmissionController.Scope scope, String message) {
+        super(message);
+        this.scope = scope;
+    }
+
+    /**
+     * @return whether the owner's or the wishlist's limit was exceeded
+     */
+    public AdmissionController.Scope scope() {
+        return scope;
+    }
+}
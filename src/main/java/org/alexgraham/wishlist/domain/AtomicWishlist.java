@@ -0,0 +1,70 @@
+package org.alexgraham.wishlist.domain;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds a WishlistSnapshot that several threads read and update, without locks.
+ *
+ * Readers call {@link #get()} and can keep the snapshot as long as they like; it never changes.
+ * Writers compute a new snapshot from the current one and install it with a compare-and-set, so
+ * a write that raced with another is retried against the winner's snapshot rather than lost.
+ *
+ * The held snapshot is the stored state, so each snapshot is installed as {@link WishlistSnapshot#saved()}:
+ * every installed update is one new version, and a reader that kept an earlier version (as an
+ * ETag, say) can tell that the Wishlist has changed since.
+ */
+public class AtomicWishlist {
+
+    private final AtomicReference<WishlistSnapshot> current;
+
+    public AtomicWishlist(WishlistSnapshot initial) {
+        if (initial == null) {
+            throw new IllegalArgumentException("null initial snapshot");
+        }
+        this.current = new AtomicReference<>(initial.saved());
+    }
+
+    /**
+     * @return the current snapshot
+     */
+    public WishlistSnapshot get() {
+        return current.get();
+    }
+
+    /**
+     * Replaces the snapshot, but only if it is still the expected one.
+     *
+     * @param expected the snapshot the update was computed from
+     * @param updated the new snapshot, which is held as saved
+     * @return true if the snapshot was replaced; false if another thread replaced it first
+     */
+    public boolean compareAndSet(WishlistSnapshot expected, WishlistSnapshot updated) {
+        return current.compareAndSet(expected, updated.saved());
+    }
+
+    /**
+     * Applies a change to the current snapshot, retrying against the latest snapshot until the
+     * change is installed without a concurrent update in between.
+     *
+     * The change may therefore run more than once, and must not have side effects. Exceptions it
+     * throws (such as MissingResourceException for an Item that another thread removed) propagate
+     * and leave the snapshot unchanged.
+     *
+     * @param change computes the new snapshot from the current one, e.g. {@code s -> s.withItemAdded(item)}
+     * @return the snapshot that was installed
+     */
+    public WishlistSnapshot update(UnaryOperator<WishlistSnapshot> change) {
+        while (true) {
+            WishlistSnapshot expected = current.get();
+            WishlistSnapshot updated = change.apply(expected);
+            if (updated == expected) {
+                return expected;
+            }
+            updated = updated.saved();
+            if (current.compareAndSet(expected, updated)) {
+                return updated;
+            }
+        }
+    }
+}
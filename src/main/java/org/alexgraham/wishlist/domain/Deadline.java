@@ -0,0 +1,63 @@
+package org.alexgraham.wishlist.domain;
+
+import java.time.Duration;
+
+/**
+ * A point in time by which a call must complete.
+ *
+ * Deadlines are absolute, so a single Deadline can be passed down through several calls and each
+ * one only gets the time that remains.
+ */
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(false, 0);
+
+    private final boolean bounded;
+    private final long expiresAtNanos; // relative to System.nanoTime()
+
+    private Deadline(boolean bounded, long expiresAtNanos) {
+        this.bounded = bounded;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * @return a Deadline that never expires
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * @param timeout how long from now until the Deadline expires
+     * @return a Deadline that expires after the given timeout
+     */
+    public static Deadline after(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("negative timeout=" + timeout);
+        }
+        return new Deadline(true, System.nanoTime() + timeout.toNanos());
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && remainingNanos() <= 0;
+    }
+
+    /**
+     * @return the time left before the Deadline expires (zero once it has), or Long.MAX_VALUE
+     *         nanoseconds for an unbounded Deadline
+     */
+    public long remainingNanos() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, expiresAtNanos - System.nanoTime());
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline[remaining=" + Duration.ofNanos(remainingNanos()) + "]" : "Deadline[none]";
+    }
+}
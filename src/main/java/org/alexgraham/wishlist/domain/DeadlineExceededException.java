@@ -0,0 +1,13 @@
+package org.alexgraham.wishlist.domain;
+
+/**
+ * Thrown when a call does not complete before its Deadline.
+ *
+ * For calls that write, the write may or may not have been applied.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,324 @@
+package org.alexgraham.wishlist.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index over the details of Items, partitioned by owner.
+ *
+ * Each owner's index maps a token to a posting list of item ordinals (a sorted int array), so a
+ * search is a handful of array scans and bitset intersections rather than a walk over every
+ * wishlist. Owners are indexed lazily and then kept up to date incrementally as items are added.
+ * Removed items are left as tombstones until they make up a quarter of an owner's index, which is
+ * then compacted. When more than maxOwners are indexed, the least recently used owner's index is dropped.
+ */
+class ItemSearchIndex {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // in access order, so the eldest entry is the least recently used. Guarded by itself.
+    private final Map<UUID, OwnerIndex> owners;
+
+    ItemSearchIndex(int maxOwners) {
+        if (maxOwners <= 0) {
+            throw new IllegalArgumentException("maxOwners must be positive, maxOwners=" + maxOwners);
+        }
+        this.owners = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, OwnerIndex> eldest) {
+                return size() > maxOwners;
+            }
+        };
+    }
+
+    /**
+     * Creates an empty index for an owner, if the owner has not been indexed yet. Searches of the
+     * owner wait until the index has been loaded, so they never see it partly filled.
+     *
+     * @param ownerId the owner
+     * @return a Loader for the new index, which the caller must use to fill it; or an empty Optional
+     *         if the owner is already indexed, or being indexed by another caller
+     */
+    Optional<Loader> register(UUID ownerId) {
+        synchronized (owners) {
+            if (owners.containsKey(ownerId)) {
+                return Optional.empty();
+            }
+            OwnerIndex index = new OwnerIndex();
+            owners.put(ownerId, index);
+            return Optional.of(new Loader(ownerId, index));
+        }
+    }
+
+    /**
+     * Adds an item to an owner's index. Does nothing if the owner has not been indexed, since
+     * the item will be picked up when the owner's index is first loaded.
+     */
+    void addItem(UUID ownerId, Item item) {
+        OwnerIndex index = get(ownerId);
+        if (index != null) {
+            index.add(item);
+        }
+    }
+
+    /**
+     * Removes an item from an owner's index. Does nothing if the owner has not been indexed.
+     */
+    void removeItem(UUID ownerId, UUID itemId) {
+        OwnerIndex index = get(ownerId);
+        if (index != null) {
+            index.remove(itemId);
+        }
+    }
+
+    /**
+     * Searches an owner's items. Every token of the query must match a token of the item's
+     * details; the last query token is treated as a prefix, to support type-ahead.
+     *
+     * If the owner's index is being loaded, waits for the load to finish.
+     *
+     * @return matching items in the order they were indexed, or an empty list if the owner is not indexed
+     * @throws IllegalStateException if the owner's index failed to load
+     */
+    List<Item> search(UUID ownerId, String query) {
+        OwnerIndex index = get(ownerId);
+        if (index == null) {
+            return List.of();
+        }
+        try {
+            index.loaded.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("The search index for owner=" + ownerId + " failed to load", e.getCause());
+        }
+        return index.search(tokenize(query));
+    }
+
+    /**
+     * @return the tokens of the text in the order they appear, including repeats
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private OwnerIndex get(UUID ownerId) {
+        synchronized (owners) {
+            return owners.get(ownerId);
+        }
+    }
+
+    /**
+     * Fills a newly registered owner's index. Items added to or removed from the owner through
+     * the ItemSearchIndex while it loads are kept, so the Loader may be given Items read before
+     * or after such changes.
+     */
+    final class Loader {
+        private final UUID ownerId;
+        private final OwnerIndex index;
+
+        private Loader(UUID ownerId, OwnerIndex index) {
+            this.ownerId = ownerId;
+            this.index = index;
+        }
+
+        void add(Item item) {
+            index.load(item);
+        }
+
+        /**
+         * Publishes the index to searches.
+         */
+        void finish() {
+            index.finishLoading();
+        }
+
+        /**
+         * Drops the index, so the next search rebuilds it, and fails the searches waiting for it.
+         */
+        void fail(Throwable cause) {
+            synchronized (owners) {
+                owners.remove(ownerId, index);
+            }
+            index.loaded.completeExceptionally(cause);
+        }
+    }
+
+    private static final class OwnerIndex {
+        private final List<Item> items = new ArrayList<>();
+        private final Map<UUID, Integer> ordinals = new HashMap<>();
+        private final TreeMap<String, Postings> postings = new TreeMap<>();
+        private int tombstones;
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        // so a load that read an Item before it was removed does not add it back
+        private final Set<UUID> removedWhileLoading = new HashSet<>();
+
+        synchronized void load(Item item) {
+            if (!removedWhileLoading.contains(item.itemId())) {
+                add(item);
+            }
+        }
+
+        void finishLoading() {
+            synchronized (this) {
+                removedWhileLoading.clear();
+            }
+            loaded.complete(null);
+        }
+
+        synchronized void add(Item item) {
+            removedWhileLoading.remove(item.itemId());
+            if (ordinals.containsKey(item.itemId())) {
+                return;
+            }
+            int ordinal = items.size();
+            items.add(item);
+            ordinals.put(item.itemId(), ordinal);
+            for (String token : tokenize(item.details())) {
+                postings.computeIfAbsent(token, t -> new Postings()).add(ordinal);
+            }
+        }
+
+        // leaves the item's ordinal in the posting lists, but as a tombstone that search skips
+        synchronized void remove(UUID itemId) {
+            if (!loaded.isDone()) {
+                removedWhileLoading.add(itemId);
+            }
+            Integer ordinal = ordinals.remove(itemId);
+            if (ordinal != null) {
+                items.set(ordinal, null);
+                tombstones++;
+                if (tombstones * 4 > items.size()) {
+                    compact();
+                }
+            }
+        }
+
+        // renumbers the live items in order, so the posting lists stay ascending
+        private void compact() {
+            int[] renumbered = new int[items.size()];
+            int live = 0;
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                if (item == null) {
+                    renumbered[i] = -1;
+                } else {
+                    renumbered[i] = live;
+                    items.set(live, item);
+                    ordinals.put(item.itemId(), live);
+                    live++;
+                }
+            }
+            items.subList(live, items.size()).clear();
+            postings.values().removeIf(list -> list.renumber(renumbered) == 0);
+            tombstones = 0;
+        }
+
+        // every token must match exactly, except the last one typed, which matches as a prefix
+        synchronized List<Item> search(List<String> queryTokens) {
+            if (queryTokens.isEmpty()) {
+                return List.of();
+            }
+
+            BitSet matches = null;
+            int last = queryTokens.size() - 1;
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i <= last; i++) {
+                String token = queryTokens.get(i);
+                if (i < last && !seen.add(token)) {
+                    continue;
+                }
+                BitSet tokenMatches = new BitSet(items.size());
+                if (i < last) {
+                    Postings exact = postings.get(token);
+                    if (exact != null) {
+                        exact.addTo(tokenMatches);
+                    }
+                } else {
+                    for (Postings prefixed : postings.subMap(token, token + Character.MAX_VALUE).values()) {
+                        prefixed.addTo(tokenMatches);
+                    }
+                }
+
+                if (matches == null) {
+                    matches = tokenMatches;
+                } else {
+                    matches.and(tokenMatches);
+                }
+                if (matches.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<Item> results = new ArrayList<>(matches.cardinality());
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                Item item = items.get(i);
+                if (item != null) {
+                    results.add(item);
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * A growable, ascending array of item ordinals.
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[2];
+        private int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(ordinals[i]);
+            }
+        }
+
+        /**
+         * Maps each ordinal through renumbered, dropping those it maps to -1.
+         *
+         * @return the number of ordinals left
+         */
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = renumbered[ordinals[i]];
+                if (ordinal >= 0) {
+                    ordinals[kept++] = ordinal;
+                }
+            }
+            size = kept;
+            return size;
+        }
+    }
+}
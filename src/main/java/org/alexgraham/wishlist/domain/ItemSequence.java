@@ -0,0 +1,261 @@
+package org.alexgraham.wishlist.domain;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * An immutable, indexed sequence of Items.
+ *
+ * Backed by a persistent AVL tree whose nodes record their subtree sizes, so get, insert and
+ * remove by index are O(log n). "Changing" a sequence returns a new one that shares every node
+ * off the changed path with the old one: an update copies O(log n) nodes instead of the whole
+ * list, and the old sequence stays valid, which is what makes it safe to hand out to concurrent
+ * readers without copying.
+ */
+public final class ItemSequence implements Iterable<Item> {
+    private static final ItemSequence EMPTY = new ItemSequence(null);
+
+    private final Node root;
+
+    private ItemSequence(Node root) {
+        this.root = root;
+    }
+
+    public static ItemSequence empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param items the Items, in order
+     * @return a sequence of the given Items
+     */
+    public static ItemSequence of(List<Item> items) {
+        return items.isEmpty() ? EMPTY : new ItemSequence(build(items, 0, items.size()));
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @param index the index of the Item
+     * @return the Item at the index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public Item get(int index) {
+        checkIndex(index, size());
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.item;
+            }
+        }
+    }
+
+    /**
+     * @param itemId the id of an Item
+     * @return the index of the Item with the given id, or -1 if there is none
+     */
+    public int indexOf(UUID itemId) {
+        int index = 0;
+        for (Item item : this) {
+            if (itemId.equals(item.itemId())) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * @param item the Item to append
+     * @return a sequence with the Item added to the end
+     */
+    public ItemSequence append(Item item) {
+        return insert(size(), item);
+    }
+
+    /**
+     * @param index the index at which to insert the Item, from 0 to size()
+     * @param item the Item to insert
+     * @return a sequence with the Item inserted, and later Items shifted back
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public ItemSequence insert(int index, Item item) {
+        checkIndex(index, size() + 1);
+        return new ItemSequence(insert(root, index, item));
+    }
+
+    /**
+     * @param index the index of the Item to remove
+     * @return a sequence without the Item at the index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public ItemSequence remove(int index) {
+        checkIndex(index, size());
+        return new ItemSequence(remove(root, index));
+    }
+
+    /**
+     * @return a read-only List view of this sequence; it never changes, so it can be shared freely
+     */
+    public List<Item> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Item get(int index) {
+                return ItemSequence.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ItemSequence.this.size();
+            }
+
+            @Override
+            public Iterator<Item> iterator() {
+                return ItemSequence.this.iterator();
+            }
+        };
+    }
+
+    /**
+     * Iterates in order, in O(1) amortized time per Item.
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node> path = new ArrayDeque<>();
+            {
+                pushLeft(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Item next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                pushLeft(node.right);
+                return node.item;
+            }
+
+            private void pushLeft(Node node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+        };
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("index=" + index + " bound=" + bound);
+        }
+    }
+
+    private static Node build(List<Item> items, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return node(build(items, from, middle), items.get(middle), build(items, middle + 1, to));
+    }
+
+    private static Node insert(Node node, int index, Item item) {
+        if (node == null) {
+            return node(null, item, null);
+        }
+        int leftSize = size(node.left);
+        if (index <= leftSize) {
+            return balance(insert(node.left, index, item), node.item, node.right);
+        }
+        return balance(node.left, node.item, insert(node.right, index - leftSize - 1, item));
+    }
+
+    private static Node remove(Node node, int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return balance(remove(node.left, index), node.item, node.right);
+        } else if (index > leftSize) {
+            return balance(node.left, node.item, remove(node.right, index - leftSize - 1));
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        }
+        // replace with the first Item of the right subtree
+        Node first = node.right;
+        while (first.left != null) {
+            first = first.left;
+        }
+        return balance(node.left, first.item, remove(node.right, 0));
+    }
+
+    // rebuilds a node whose subtrees' heights differ by at most 2
+    private static Node balance(Node left, Item item, Node right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return node(left.left, left.item, node(left.right, item, right));
+            }
+            Node pivot = left.right;
+            return node(node(left.left, left.item, pivot.left), pivot.item, node(pivot.right, item, right));
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return node(node(left, item, right.left), right.item, right.right);
+            }
+            Node pivot = right.left;
+            return node(node(left, item, pivot.left), pivot.item, node(pivot.right, right.item, right.right));
+        }
+        return node(left, item, right);
+    }
+
+    private static Node node(Node left, Item item, Node right) {
+        return new Node(left, item, right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node {
+        private final Node left;
+        private final Item item;
+        private final Node right;
+        private final int size;
+        private final int height;
+
+        private Node(Node left, Item item, Node right) {
+            this.left = left;
+            this.item = item;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.alexgraham.wishlist.domain;
+
+/**
+ * The order in which to list an owner's Wishlists, by when they were last modified.
+ */
+public enum ListOrder {
+    NEWEST_FIRST,
+    OLDEST_FIRST
+}
@@ -0,0 +1,20 @@
+package org.alexgraham.wishlist.domain;
+
+/**
+ * How up to date a read from a Repository must be.
+ *
+ * For read-your-writes consistency across several calls, see {@link WishlistSession}.
+ */
+public enum ReadConsistency {
+
+    /**
+     * The read may not reflect writes that completed shortly before it. Cheaper (in DynamoDB, half
+     * the read capacity of a strongly consistent read); suitable for browsing.
+     */
+    EVENTUAL,
+
+    /**
+     * The read reflects every write that completed before it. Use for read-modify-write.
+     */
+    STRONG
+}
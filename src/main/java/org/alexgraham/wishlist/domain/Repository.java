@@ -1,7 +1,11 @@
 package org.alexgraham.wishlist.domain;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.MissingResourceException;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 public interface Repository {
 
@@ -10,23 +14,125 @@ public interface Repository {
      *
      * @param wishlistId the ID of the wishlist to get
      * @return A wishlist
-     * @throws java.util.MissingResourceException if the given UUID does not map to an existing Wishlist
+     * @throws MissingResourceException if the given UUID does not map to an existing Wishlist
      */
-    Wishlist getById(UUID wishlistId);
+    default Wishlist getById(UUID wishlistId) {
+        return findById(wishlistId).orElseThrow(() -> new MissingResourceException(
+                "Wishlist not found",
+                Wishlist.class.getName(),
+                wishlistId.toString()));
+    }
+
+    /**
+     * Looks up a wishlist in persistence without treating a miss as an error, using an eventually
+     * consistent read.
+     *
+     * Prefer this over getById on hot paths where misses are common, since it avoids
+     * building an exception (and its stack trace) for every missing id.
+     *
+     * @param wishlistId the ID of the wishlist to find
+     * @return the Wishlist, or an empty Optional if the given UUID does not map to an existing Wishlist
+     */
+    default Optional<Wishlist> findById(UUID wishlistId) {
+        return findById(wishlistId, ReadConsistency.EVENTUAL);
+    }
+
+    /**
+     * Looks up a wishlist in persistence without treating a miss as an error.
+     *
+     * @param wishlistId the ID of the wishlist to find
+     * @param consistency how up to date the read must be
+     * @return the Wishlist, or an empty Optional if the given UUID does not map to an existing Wishlist
+     */
+    Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency);
+
+    /**
+     * Looks up only the version of a wishlist.
+     *
+     * The default implementation reads the whole Wishlist; implementations should override it
+     * with something cheaper, since it is used to answer "has this changed?" polls.
+     *
+     * @param wishlistId the ID of the wishlist to find
+     * @param consistency how up to date the read must be
+     * @return the Wishlist's version, or an empty Optional if the given UUID does not map to an existing Wishlist
+     */
+    default Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        return findById(wishlistId, consistency).map(Wishlist::version);
+    }
+
+    /**
+     * Looks up a window of a wishlist's Items, in wishlist order.
+     *
+     * The default implementation reads the whole Wishlist and slices it; implementations should
+     * override it so the cost depends on the size of the window rather than the Wishlist.
+     *
+     * @param wishlistId the ID of the wishlist
+     * @param offset the index of the first Item to return
+     * @param limit the most Items to return
+     * @param consistency how up to date the read must be
+     * @return the Items (empty if offset is past the end), or an empty Optional if the given UUID does
+     *         not map to an existing Wishlist
+     */
+    default Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        return findById(wishlistId, consistency).map(wishlist -> {
+            List<Item> items = wishlist.items();
+            int from = Math.min(offset, items.size());
+            return items.subList(from, Math.min(from + limit, items.size()));
+        });
+    }
 
     /**
      * Queries for a list of Wishlists based on their owner.
      *
+     * Results are always eventually consistent, since they may come from a secondary index.
+     *
      * @param ownerId the id of the owner to query for
      * @return a list of Wishlists the owner owns (or an empty list if they don't own any Wishlists).
      */
     List<Wishlist> queryByOwner(UUID ownerId);
 
     /**
-     * Persists a Wishlist.
+     * Queries for an owner's most (or least) recently modified Wishlists.
+     *
+     * Results are always eventually consistent, and like queryByOwner, do not include Items.
+     * Wishlists with no recorded lastModified count as the least recently modified, and are returned
+     * with a null lastModified; an implementation may leave them out until it has indexed them.
+     *
+     * The default implementation queries all of the owner's Wishlists and sorts them;
+     * implementations should override it to read only the Wishlists returned.
+     *
+     * @param ownerId the id of the owner to query for
+     * @param limit the most Wishlists to return
+     * @param order which end of the owner's Wishlists to return
+     * @return up to limit of the owner's Wishlists, in the given order
+     */
+    default List<Wishlist> queryByOwner(UUID ownerId, int limit, ListOrder order) {
+        Comparator<Wishlist> byLastModified =
+                Comparator.comparing(Wishlist::lastModified, Comparator.nullsFirst(Comparator.naturalOrder()));
+        return queryByOwner(ownerId)
+                .stream()
+                .sorted(order == ListOrder.NEWEST_FIRST ? byLastModified.reversed() : byLastModified)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Persists a Wishlist, provided the persisted copy is still at the Wishlist's stored version
+     * (see {@link Wishlist#storedVersion()}), so that a save never overwrites a change it did not see.
      *
      * @param wishlist The Wishlist to persist
+     * @throws java.util.ConcurrentModificationException if the Wishlist was saved by someone else since it was read
      */
     void save(Wishlist wishlist);
 
+    /**
+     * Persists every Wishlist in a unit of work atomically: either all of them are saved, or
+     * none are. As with {@link #save(Wishlist)}, each is only saved if its persisted copy is still
+     * at its stored version.
+     *
+     * @param unitOfWork The Wishlists to persist
+     * @throws java.util.ConcurrentModificationException if any of the Wishlists was saved by someone else since it was read
+     */
+    void commit(UnitOfWork unitOfWork);
+
 }
@@ -0,0 +1,95 @@
+package org.alexgraham.wishlist.domain;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket rate limiter: tokens refill continuously at a fixed rate up to a capacity, and
+ * each admitted call takes one.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond tokens added per second
+     * @param capacity the most tokens the bucket can hold, i.e. the largest burst it admits
+     */
+    public TokenBucket(double ratePerSecond, double capacity) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive, ratePerSecond=" + ratePerSecond);
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, capacity=" + capacity);
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return true if a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a token taken by a call that then did not go ahead.
+     */
+    public synchronized void release() {
+        refill();
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * @return true if the bucket has refilled to capacity, so a new bucket would behave the same
+     */
+    public synchronized boolean isFull() {
+        return tokens + (System.nanoTime() - lastRefillNanos) * tokensPerNano >= capacity;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which a token was last taken, asked for or returned
+     */
+    public synchronized long lastUsedNanos() {
+        return lastRefillNanos;
+    }
+
+    /**
+     * Takes a token, waiting for one to become available if necessary.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,43 @@
+package org.alexgraham.wishlist.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A set of Wishlists to be persisted together, atomically.
+ *
+ * See {@link Repository#commit(UnitOfWork)}.
+ */
+public class UnitOfWork {
+
+    private final Map<UUID, Wishlist> wishlists = new LinkedHashMap<>();
+
+    /**
+     * Adds a Wishlist to be saved when the unit of work is committed. Adding the same Wishlist
+     * twice keeps the later one.
+     *
+     * @param wishlist the Wishlist to save
+     * @return this unit of work
+     */
+    public UnitOfWork save(Wishlist wishlist) {
+        if (wishlist == null) {
+            throw new IllegalArgumentException("null wishlist");
+        }
+        wishlists.put(wishlist.wishlistId(), wishlist);
+        return this;
+    }
+
+    /**
+     * @return the Wishlists to save, in the order they were added
+     */
+    public List<Wishlist> wishlists() {
+        return new ArrayList<>(wishlists.values());
+    }
+
+    public boolean isEmpty() {
+        return wishlists.isEmpty();
+    }
+}
@@ -1,5 +1,6 @@
 package org.alexgraham.wishlist.domain;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.MissingResourceException;
@@ -16,12 +17,21 @@ public class Wishlist {
     private UUID ownerId;
     private String name;
     private List<Item> items;
+    private Integer itemCount; // only consulted when items were not loaded
+    private Instant lastModified;
+    private long version;
+    private long storedVersion; // the version persistence holds, as far as this object knows
 
-    private Wishlist(UUID wishlistId, UUID ownerId, String name, List<Item> items) {
+    private Wishlist(UUID wishlistId, UUID ownerId, String name, List<Item> items, Integer itemCount,
+                     Instant lastModified, long version, long storedVersion) {
         this.wishlistId = wishlistId;
         this.ownerId = ownerId;
         this.name = name;
         this.items = items;
+        this.itemCount = itemCount;
+        this.lastModified = lastModified;
+        this.version = version;
+        this.storedVersion = storedVersion;
     }
 
     public UUID wishlistId() {
@@ -40,6 +50,45 @@ public class Wishlist {
         return items == null ? null : List.copyOf(items);
     }
 
+    /**
+     * @return the number of Items, which is known even when the Wishlist was loaded without its
+     *         Items; null if it was loaded without Items and the count was never recorded
+     */
+    public Integer itemCount() {
+        return items == null ? itemCount : Integer.valueOf(items.size());
+    }
+
+    /**
+     * @return when the Wishlist was created or last changed, or null if that was never recorded
+     */
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * A version tag for this Wishlist's contents, which changes whenever the Wishlist does. Clients
+     * can keep it to ask later whether the Wishlist has changed, without fetching it.
+     *
+     * Versions increase by one per save that changed the Wishlist, however many changes it
+     * made. Wishlists last saved before versions were recorded are at version 0.
+     *
+     * @return the version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * The version this Wishlist had when it was loaded, or last saved; 0 for a Wishlist that has
+     * never been saved. Repositories only save a Wishlist if the version they hold is still this
+     * one, so a save never overwrites a change it did not see.
+     *
+     * @return the stored version
+     */
+    public long storedVersion() {
+        return storedVersion;
+    }
+
     /**
      * Creates a new Wishlist with an empty set of Items.
      *
@@ -48,7 +97,7 @@ public class Wishlist {
      * @return A new wishlist
      */
     static Wishlist create(UUID ownerId, String name) {
-        return new Wishlist(UUID.randomUUID(), ownerId, name, new ArrayList<>());
+        return new Wishlist(UUID.randomUUID(), ownerId, name, new ArrayList<>(), 0, Instant.now(), 1, 0);
     }
 
     /**
@@ -68,7 +117,54 @@ public class Wishlist {
             String name,
             List<Item> items
     ) {
-        return new Wishlist(wishlistId, ownerId, name, items);
+        return rehydrate(wishlistId, ownerId, name, items, null, null, 0);
+    }
+
+    /**
+     * Rehydrates a Wishlist object, including its denormalized summary data.
+     *
+     * @param wishlistId The Wishlist id
+     * @param ownerId The owner id
+     * @param name The name of the wishlist
+     * @param items The items, or null if they were not loaded
+     * @param itemCount The number of items, used when items is null; may be null if unknown
+     * @param lastModified When the wishlist was last changed; may be null if unknown
+     * @param version The version of the wishlist
+     * @return the rehydrated wishlist object
+     */
+    public static Wishlist rehydrate(
+            UUID wishlistId,
+            UUID ownerId,
+            String name,
+            List<Item> items,
+            Integer itemCount,
+            Instant lastModified,
+            long version
+    ) {
+        return new Wishlist(wishlistId, ownerId, name, items, itemCount, lastModified, version, version);
+    }
+
+    /**
+     * Rebuilds a Wishlist that may have changes not yet saved, such as one from a WishlistSnapshot.
+     */
+    static Wishlist restore(UUID wishlistId, UUID ownerId, String name, List<Item> items, Instant lastModified,
+                            long version, long storedVersion) {
+        return new Wishlist(wishlistId, ownerId, name, items, items.size(), lastModified, version, storedVersion);
+    }
+
+    /**
+     * @return a copy of this Wishlist that shares no mutable state with it
+     */
+    Wishlist copy() {
+        return new Wishlist(wishlistId, ownerId, name, items == null ? null : new ArrayList<>(items), itemCount,
+                lastModified, version, storedVersion);
+    }
+
+    /**
+     * Records that this Wishlist has been saved, so that later changes are saved as a new version.
+     */
+    void markSaved() {
+        storedVersion = version;
     }
 
     /**
@@ -78,6 +174,7 @@ public class Wishlist {
      */
     public void addItem(Item item) {
         this.items.add(item);
+        touch();
     }
 
     /**
@@ -97,13 +194,7 @@ public class Wishlist {
             return;
         }
 
-        int indexOfOldLocation = -1;
-        for (int i = 0; i < items.size(); i++) {
-            if (itemId.equals(items.get(i).itemId())) {
-                indexOfOldLocation = i;
-                break;
-            }
-        }
+        int indexOfOldLocation = indexOfItem(itemId);
 
         if (indexOfOldLocation == -1) {
             throw new MissingResourceException("the item with id=" + wishlistId + " does not exist in wishlist=" +
@@ -115,6 +206,44 @@ public class Wishlist {
 
         Item item = items.remove(indexOfOldLocation);
         items.add(index, item);
+        touch();
+    }
+
+    /**
+     * Removes an item from the Wishlist.
+     *
+     * @param itemId the id of the item to remove
+     * @return the removed item
+     * @throws MissingResourceException if the item is not in this Wishlist
+     */
+    public Item removeItem(UUID itemId) {
+        if (itemId == null) {
+            throw new IllegalArgumentException("null itemId");
+        }
+
+        int index = indexOfItem(itemId);
+        if (index == -1) {
+            throw new MissingResourceException("the item with id=" + itemId + " does not exist in wishlist=" +
+                    wishlistId, Item.class.getName(), itemId.toString());
+        }
+        Item removed = items.remove(index);
+        touch();
+        return removed;
+    }
+
+    /**
+     * Inserts an item into the Wishlist at the given index, shifting later items back.
+     *
+     * @param item the item to insert
+     * @param index the index at which to insert the item; if greater than the number of
+     *              items, the item is added to the end
+     */
+    public void insertItem(Item item, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("negative index=" + index);
+        }
+        items.add(Math.min(index, items.size()), item);
+        touch();
     }
 
     /**
@@ -133,4 +262,18 @@ public class Wishlist {
             return Optional.empty();
         }
     }
+
+    private void touch() {
+        lastModified = Instant.now();
+        version = storedVersion + 1;
+    }
+
+    private int indexOfItem(UUID itemId) {
+        for (int i = 0; i < items.size(); i++) {
+            if (itemId.equals(items.get(i).itemId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
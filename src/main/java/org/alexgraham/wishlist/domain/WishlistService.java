@@ -3,10 +3,22 @@ package org.alexgraham.wishlist.domain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * The WishlistService is the public-facing entry point to the Wishlist package.
@@ -18,10 +30,60 @@ import java.util.UUID;
 public class WishlistService {
     private static final Logger logger = LoggerFactory.getLogger(WishlistService.class);
 
+    private static final int SEARCH_INDEX_MAX_OWNERS = 10_000;
+
+    // the largest window getWishlistItems serves; keeps DynamoDB projection expressions well under their size limit
+    public static final int MAX_ITEMS_WINDOW = 100;
+
+    // the most Items addItemsToWishlist takes at once. A Wishlist is stored as one DynamoDB item, capped
+    // at 400KB; at up to 255 characters (about 1KB of UTF-8) per Item, a full batch stays well inside it
+    public static final int MAX_ITEMS_PER_BATCH = 100;
+
+    // how many times a change is tried against the latest Wishlist before a conflict is reported
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    // bounds the threads the default deadline executor can start; calls beyond it queue, and give up
+    // when their Deadline expires
+    private static final int DEFAULT_DEADLINE_THREADS = 64;
+
+    // shared by every service built without an executor of its own, so creating services doesn't leak
+    // threads; they are daemons, so the pool never has to be shut down
+    private static final ExecutorService DEFAULT_DEADLINE_EXECUTOR =
+            Executors.newFixedThreadPool(DEFAULT_DEADLINE_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "wishlist-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     private final Repository repo;
+    private final ItemSearchIndex searchIndex;
+    private final ExecutorService deadlineExecutor;
+    private final AdmissionController admission;
 
     public WishlistService(Repository repo) {
+        this(repo, DEFAULT_DEADLINE_EXECUTOR);
+    }
+
+    /**
+     * @param repo The Repository to persist Wishlists in
+     * @param deadlineExecutor Runs Repository calls that have a bounded Deadline, so the caller can
+     *                         stop waiting for them when the Deadline expires
+     */
+    public WishlistService(Repository repo, ExecutorService deadlineExecutor) {
+        this(repo, deadlineExecutor, AdmissionController.unlimited());
+    }
+
+    /**
+     * @param repo The Repository to persist Wishlists in
+     * @param deadlineExecutor Runs Repository calls that have a bounded Deadline
+     * @param admission Limits the rate of calls per owner and per wishlist; every public method
+     *                  may throw AdmissionRejectedException when a limit is exceeded
+     */
+    public WishlistService(Repository repo, ExecutorService deadlineExecutor, AdmissionController admission) {
         this.repo = repo;
+        this.searchIndex = new ItemSearchIndex(SEARCH_INDEX_MAX_OWNERS);
+        this.deadlineExecutor = deadlineExecutor;
+        this.admission = admission;
     }
 
     /**
@@ -32,21 +94,98 @@ public class WishlistService {
      * @return The newly added Item
      * @throws IllegalArgumentException if the Item arguments are invalid
      * @throws MissingResourceException if the Wishlist does not exist
+     * @throws ConcurrentModificationException if the Wishlist kept changing while the Item was being added
      */
     public Item addItemToWishlist(UUID wishlistId, String itemDetails) {
+        return addItemToWishlist(wishlistId, itemDetails, Deadline.none());
+    }
+
+    /**
+     * Adds a new Item to a Wishlist, giving up once the Deadline expires.
+     *
+     * @see #addItemToWishlist(UUID, String)
+     * @throws DeadlineExceededException if the Deadline expires first; the Item may or may not have been added
+     */
+    public Item addItemToWishlist(UUID wishlistId, String itemDetails, Deadline deadline) {
+        return addItemToWishlist(wishlistId, itemDetails, deadline, null);
+    }
+
+    Item addItemToWishlist(UUID wishlistId, String itemDetails, Deadline deadline, WishlistSession session) {
         // TODO: Authorize caller has access to add item to Wishlist
+        AdmissionController.Write write = admission.admitWrite(wishlistId);
         Item item = Item.create(itemDetails);
 
         if (item.validate().isPresent()) {
             throw new IllegalArgumentException("The item arguments are invalid: " + item.validate().get());
         }
 
-        Wishlist wishlist = getWishlistFromRepo(wishlistId);
-        wishlist.addItem(item);
-        saveWishlist(wishlist);
+        Wishlist wishlist = updateWishlist(wishlistId, write, deadline, session, w -> w.addItem(item));
+        searchIndex.addItem(wishlist.ownerId(), item);
         return item;
     }
 
+    /**
+     * Adds several new Items to the end of a Wishlist, in the given order.
+     *
+     * All of the Items are validated before the Wishlist is read, and the Wishlist is read and
+     * saved once, no matter how many Items are added. An empty list only checks that the Wishlist
+     * exists.
+     *
+     * @param wishlistId Id of the wishlist to which the items will be added
+     * @param itemDetails Details about each item; at most MAX_ITEMS_PER_BATCH of them
+     * @return The newly added Items, in the same order as their details
+     * @throws IllegalArgumentException if there are more than MAX_ITEMS_PER_BATCH Items, or any of the
+     *                                  Item arguments are invalid (in which case none are added)
+     * @throws MissingResourceException if the Wishlist does not exist
+     * @throws ConcurrentModificationException if the Wishlist kept changing while the Items were being added
+     */
+    public List<Item> addItemsToWishlist(UUID wishlistId, List<String> itemDetails) {
+        return addItemsToWishlist(wishlistId, itemDetails, Deadline.none());
+    }
+
+    /**
+     * Adds several new Items to a Wishlist, giving up once the Deadline expires.
+     *
+     * @see #addItemsToWishlist(UUID, List)
+     * @throws DeadlineExceededException if the Deadline expires first; the Items may or may not have been added
+     */
+    public List<Item> addItemsToWishlist(UUID wishlistId, List<String> itemDetails, Deadline deadline) {
+        return addItemsToWishlist(wishlistId, itemDetails, deadline, null);
+    }
+
+    List<Item> addItemsToWishlist(UUID wishlistId, List<String> itemDetails, Deadline deadline,
+                                  WishlistSession session) {
+        // TODO: Authorize caller has access to add items to Wishlist
+        AdmissionController.Write write = admission.admitWrite(wishlistId);
+        if (itemDetails == null) {
+            throw new IllegalArgumentException("null itemDetails");
+        }
+        if (itemDetails.size() > MAX_ITEMS_PER_BATCH) {
+            throw new IllegalArgumentException("at most " + MAX_ITEMS_PER_BATCH + " items can be added at once, got " +
+                    itemDetails.size());
+        }
+
+        List<Item> items = new ArrayList<>(itemDetails.size());
+        for (int i = 0; i < itemDetails.size(); i++) {
+            Item item = Item.create(itemDetails.get(i));
+            Optional<String> invalidReason = item.validate();
+            if (invalidReason.isPresent()) {
+                throw new IllegalArgumentException("The arguments for item " + i + " are invalid: " + invalidReason.get());
+            }
+            items.add(item);
+        }
+        if (items.isEmpty()) {
+            // throws if it doesn't exist
+            Wishlist wishlist = getWishlistFromRepo(wishlistId, ReadConsistency.EVENTUAL, deadline);
+            write.admitOwnerOf(wishlistId, wishlist.ownerId());
+            return items;
+        }
+
+        Wishlist wishlist = updateWishlist(wishlistId, write, deadline, session, w -> items.forEach(w::addItem));
+        items.forEach(item -> searchIndex.addItem(wishlist.ownerId(), item));
+        return items;
+    }
+
     /**
      * Creates a new Wishlist
      *
@@ -56,13 +195,29 @@ public class WishlistService {
      * @throws IllegalArgumentException if the wishlist arguments are invalid
      */
     public Wishlist createWishlist(UUID ownerId, String name) {
+        return createWishlist(ownerId, name, Deadline.none());
+    }
+
+    /**
+     * Creates a new Wishlist, giving up once the Deadline expires.
+     *
+     * @see #createWishlist(UUID, String)
+     * @throws DeadlineExceededException if the Deadline expires first; the Wishlist may or may not have been created
+     */
+    public Wishlist createWishlist(UUID ownerId, String name, Deadline deadline) {
+        return createWishlist(ownerId, name, deadline, null);
+    }
+
+    Wishlist createWishlist(UUID ownerId, String name, Deadline deadline, WishlistSession session) {
+        admission.admitOwner(ownerId);
         Wishlist newWishlist = Wishlist.create(ownerId, name);
 
         if (newWishlist.validate().isPresent()) {
             throw new IllegalArgumentException("The wishlist arguments are invalid: " + newWishlist.validate().get());
         }
 
-        saveWishlist(newWishlist);
+        saveWishlist(newWishlist, deadline, session);
+        admission.rememberOwner(newWishlist.wishlistId(), ownerId);
 
         return newWishlist;
     }
@@ -75,8 +230,179 @@ public class WishlistService {
      * @throws MissingResourceException if the wishlist does not exist
      */
     public Wishlist getWishlistById(UUID wishlistId) {
+        return getWishlistById(wishlistId, Deadline.none());
+    }
+
+    /**
+     * Gets a Wishlist with the given identifier, giving up once the Deadline expires.
+     *
+     * @see #getWishlistById(UUID)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public Wishlist getWishlistById(UUID wishlistId, Deadline deadline) {
+        return getWishlistById(wishlistId, ReadConsistency.EVENTUAL, deadline);
+    }
+
+    /**
+     * Gets a Wishlist with the given identifier, with the given read consistency.
+     *
+     * @see #getWishlistById(UUID)
+     */
+    public Wishlist getWishlistById(UUID wishlistId, ReadConsistency consistency) {
+        return getWishlistById(wishlistId, consistency, Deadline.none());
+    }
+
+    /**
+     * Gets a Wishlist with the given identifier, with the given read consistency, giving up once
+     * the Deadline expires.
+     *
+     * @see #getWishlistById(UUID)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public Wishlist getWishlistById(UUID wishlistId, ReadConsistency consistency, Deadline deadline) {
+        // TODO: Authorize access
+        admission.admitWishlist(wishlistId);
+        return getWishlistFromRepo(wishlistId, consistency, deadline);
+    }
+
+    /**
+     * Finds a Wishlist with the given identifier, without treating a missing Wishlist as an error.
+     *
+     * @param wishlistId The wishlist identifier
+     * @return The Wishlist, or an empty Optional if the wishlist does not exist
+     */
+    public Optional<Wishlist> findWishlistById(UUID wishlistId) {
+        return findWishlistById(wishlistId, Deadline.none());
+    }
+
+    /**
+     * Finds a Wishlist with the given identifier, giving up once the Deadline expires.
+     *
+     * @see #findWishlistById(UUID)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public Optional<Wishlist> findWishlistById(UUID wishlistId, Deadline deadline) {
+        return findWishlistById(wishlistId, ReadConsistency.EVENTUAL, deadline);
+    }
+
+    /**
+     * Finds a Wishlist with the given identifier, with the given read consistency.
+     *
+     * @see #findWishlistById(UUID)
+     */
+    public Optional<Wishlist> findWishlistById(UUID wishlistId, ReadConsistency consistency) {
+        return findWishlistById(wishlistId, consistency, Deadline.none());
+    }
+
+    /**
+     * Finds a Wishlist with the given identifier, with the given read consistency, giving up once
+     * the Deadline expires.
+     *
+     * @see #findWishlistById(UUID)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public Optional<Wishlist> findWishlistById(UUID wishlistId, ReadConsistency consistency, Deadline deadline) {
+        // TODO: Authorize access
+        admission.admitWishlist(wishlistId);
+        return findWishlistInRepo(wishlistId, consistency, deadline);
+    }
+
+    /**
+     * Gets a Wishlist with the given identifier, unless it is still at the given version.
+     *
+     * Intended for clients that poll to stay in sync: when nothing has changed, only the
+     * Wishlist's version is read, not its Items.
+     *
+     * @param wishlistId The wishlist identifier
+     * @param knownVersion The version the caller already has (see {@link Wishlist#version()})
+     * @return The Wishlist at a version newer than knownVersion, or an empty Optional if there is none
+     * @throws MissingResourceException if the wishlist does not exist
+     */
+    public Optional<Wishlist> getWishlistIfChanged(UUID wishlistId, long knownVersion) {
+        return getWishlistIfChanged(wishlistId, knownVersion, Deadline.none());
+    }
+
+    /**
+     * Gets a Wishlist unless it is still at the given version, giving up once the Deadline expires.
+     *
+     * @see #getWishlistIfChanged(UUID, long)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public Optional<Wishlist> getWishlistIfChanged(UUID wishlistId, long knownVersion, Deadline deadline) {
+        // TODO: Authorize access
+        admission.admitWishlist(wishlistId);
+        Optional<Long> version;
+        try {
+            version = callRepo(deadline, () -> repo.findVersionById(wishlistId, ReadConsistency.EVENTUAL));
+        } catch (DeadlineExceededException e) {
+            throw e; // re-raise
+        } catch (Exception e) { // unhandled exceptions
+            logger.error("Error getting Wishlist version by id={}", wishlistId.toString(), e);
+            throw new RuntimeException("Internal Service Error");
+        }
+
+        if (version.isEmpty()) {
+            throw new MissingResourceException("Wishlist not found", Wishlist.class.getName(), wishlistId.toString());
+        }
+        if (version.get() <= knownVersion) {
+            return Optional.empty(); // versions only grow, so a replica behind the caller has nothing newer
+        }
+        Wishlist wishlist = getWishlistFromRepo(wishlistId, ReadConsistency.EVENTUAL, deadline);
+        if (wishlist.version() < version.get()) {
+            // landed on a replica that is behind the one the version came from; returning it could
+            // take the caller back to an older version
+            wishlist = getWishlistFromRepo(wishlistId, ReadConsistency.STRONG, deadline);
+        }
+        return Optional.of(wishlist);
+    }
+
+    /**
+     * Gets a window of the Items in a Wishlist, in wishlist order.
+     *
+     * Only the requested Items are read, so this is cheaper than getWishlistById for displaying
+     * the first page of a long Wishlist.
+     *
+     * @param wishlistId The wishlist identifier
+     * @param offset The index of the first Item to return
+     * @param limit The most Items to return, at most {@value #MAX_ITEMS_WINDOW}
+     * @return The Items, or an empty list if offset is past the last Item
+     * @throws MissingResourceException if the wishlist does not exist
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    public List<Item> getWishlistItems(UUID wishlistId, int offset, int limit) {
+        return getWishlistItems(wishlistId, offset, limit, Deadline.none());
+    }
+
+    /**
+     * Gets a window of the Items in a Wishlist, giving up once the Deadline expires.
+     *
+     * @see #getWishlistItems(UUID, int, int)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public List<Item> getWishlistItems(UUID wishlistId, int offset, int limit, Deadline deadline) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("negative offset=" + offset);
+        }
+        if (limit <= 0 || limit > MAX_ITEMS_WINDOW) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_ITEMS_WINDOW + ", limit=" + limit);
+        }
+
         // TODO: Authorize access
-        return getWishlistFromRepo(wishlistId);
+        admission.admitWishlist(wishlistId);
+        Optional<List<Item>> items;
+        try {
+            items = callRepo(deadline, () -> repo.findItemsById(wishlistId, offset, limit, ReadConsistency.EVENTUAL));
+        } catch (DeadlineExceededException e) {
+            throw e; // re-raise
+        } catch (Exception e) { // unhandled exceptions
+            logger.error("Error getting Items of Wishlist id={}", wishlistId.toString(), e);
+            throw new RuntimeException("Internal Service Error");
+        }
+
+        return items.orElseThrow(() -> new MissingResourceException(
+                "Wishlist not found",
+                Wishlist.class.getName(),
+                wishlistId.toString()));
     }
 
     /**
@@ -89,9 +415,22 @@ public class WishlistService {
      * @return a list of Wishlists
      */
     public List<Wishlist> listWishlistsByOwner(UUID ownerId) {
+        return listWishlistsByOwner(ownerId, Deadline.none());
+    }
+
+    /**
+     * Returns a list of Wishlists owned by the given owner, giving up once the Deadline expires.
+     *
+     * @see #listWishlistsByOwner(UUID)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public List<Wishlist> listWishlistsByOwner(UUID ownerId, Deadline deadline) {
+        admission.admitOwner(ownerId);
         List<Wishlist> wishlistList;
         try {
-            wishlistList = repo.queryByOwner(ownerId);
+            wishlistList = callRepo(deadline, () -> repo.queryByOwner(ownerId));
+        } catch (DeadlineExceededException e) {
+            throw e; // re-raise
         } catch (Exception e) { // unhandled exceptions
             logger.error("Error querying Wishlists by ownerId={}", ownerId.toString(), e);
             throw new RuntimeException("Internal Service Error");
@@ -99,6 +438,47 @@ public class WishlistService {
         return wishlistList;
     }
 
+    /**
+     * Returns an owner's most (or least) recently modified Wishlists.
+     *
+     * Only the returned Wishlists are read, so this is the way to show an owner's "most recent
+     * wishlists". These Wishlists will not contain Items (that field will be set to null).
+     *
+     * @param ownerId The id of the owner
+     * @param limit The most Wishlists to return
+     * @param order Whether to return the newest or the oldest Wishlists
+     * @return a list of up to limit Wishlists, in the given order
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public List<Wishlist> listWishlistsByOwner(UUID ownerId, int limit, ListOrder order) {
+        return listWishlistsByOwner(ownerId, limit, order, Deadline.none());
+    }
+
+    /**
+     * Returns an owner's most (or least) recently modified Wishlists, giving up once the Deadline expires.
+     *
+     * @see #listWishlistsByOwner(UUID, int, ListOrder)
+     * @throws DeadlineExceededException if the Deadline expires first
+     */
+    public List<Wishlist> listWishlistsByOwner(UUID ownerId, int limit, ListOrder order, Deadline deadline) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, limit=" + limit);
+        }
+        if (order == null) {
+            throw new IllegalArgumentException("null order");
+        }
+
+        admission.admitOwner(ownerId);
+        try {
+            return callRepo(deadline, () -> repo.queryByOwner(ownerId, limit, order));
+        } catch (DeadlineExceededException e) {
+            throw e; // re-raise
+        } catch (Exception e) { // unhandled exceptions
+            logger.error("Error querying Wishlists by ownerId={}", ownerId.toString(), e);
+            throw new RuntimeException("Internal Service Error");
+        }
+    }
+
     /**
      * For an Item with the given id, re-orders that item within the Wishlist.
      *
@@ -111,21 +491,190 @@ public class WishlistService {
      *              the total number of Items, the Item will be added to the end.
      * @throws MissingResourceException if the Wishlist or Item do not exist
      * @throws IllegalArgumentException if the arguments are invalid
+     * @throws ConcurrentModificationException if the Wishlist kept changing while the Item was being re-ordered
      */
     public void reorderItemInWishlist(UUID wishlistId, UUID itemId, int index) {
-        Wishlist wishlist = getWishlistFromRepo(wishlistId);
-        wishlist.reorderItem(itemId, index);
-        saveWishlist(wishlist);
+        reorderItemInWishlist(wishlistId, itemId, index, Deadline.none());
+    }
+
+    /**
+     * Re-orders an Item within a Wishlist, giving up once the Deadline expires.
+     *
+     * @see #reorderItemInWishlist(UUID, UUID, int)
+     * @throws DeadlineExceededException if the Deadline expires first; the Item may or may not have been moved
+     */
+    public void reorderItemInWishlist(UUID wishlistId, UUID itemId, int index, Deadline deadline) {
+        reorderItemInWishlist(wishlistId, itemId, index, deadline, null);
+    }
+
+    void reorderItemInWishlist(UUID wishlistId, UUID itemId, int index, Deadline deadline, WishlistSession session) {
+        AdmissionController.Write write = admission.admitWrite(wishlistId);
+        updateWishlist(wishlistId, write, deadline, session, wishlist -> wishlist.reorderItem(itemId, index));
+    }
+
+    /**
+     * Moves an Item from one Wishlist to another. Both Wishlists are saved atomically, so the
+     * Item is never in both or in neither.
+     *
+     * @param fromWishlistId ID of the Wishlist that has the Item
+     * @param toWishlistId ID of the Wishlist to move the Item to
+     * @param itemId ID of the Item to move
+     * @param index The index in the target Wishlist into which the Item should be moved. If greater
+     *              than the total number of Items, the Item will be added to the end.
+     * @throws MissingResourceException if either Wishlist, or the Item, do not exist
+     * @throws IllegalArgumentException if the arguments are invalid
+     * @throws ConcurrentModificationException if the Wishlists kept changing while the Item was being moved
+     */
+    public void moveItem(UUID fromWishlistId, UUID toWishlistId, UUID itemId, int index) {
+        moveItem(fromWishlistId, toWishlistId, itemId, index, Deadline.none());
+    }
+
+    /**
+     * Moves an Item from one Wishlist to another, giving up once the Deadline expires.
+     *
+     * @see #moveItem(UUID, UUID, UUID, int)
+     * @throws DeadlineExceededException if the Deadline expires first; the Item may or may not have been moved
+     */
+    public void moveItem(UUID fromWishlistId, UUID toWishlistId, UUID itemId, int index, Deadline deadline) {
+        moveItem(fromWishlistId, toWishlistId, itemId, index, deadline, null);
+    }
+
+    void moveItem(UUID fromWishlistId, UUID toWishlistId, UUID itemId, int index, Deadline deadline,
+                  WishlistSession session) {
+        // TODO: Authorize caller has access to both Wishlists
+        if (index < 0) {
+            throw new IllegalArgumentException("negative index=" + index);
+        }
+        if (fromWishlistId.equals(toWishlistId)) {
+            reorderItemInWishlist(fromWishlistId, itemId, index, deadline, session);
+            return;
+        }
+
+        AdmissionController.Write write = admission.admitWrite(fromWishlistId, toWishlistId);
+        Wishlist from = getWishlistFromRepo(fromWishlistId, ReadConsistency.STRONG, deadline);
+        Wishlist to = getWishlistFromRepo(toWishlistId, ReadConsistency.STRONG, deadline);
+        write.admitOwnerOf(fromWishlistId, from.ownerId());
+        write.admitOwnerOf(toWishlistId, to.ownerId());
+
+        for (int attempt = 1; ; attempt++) {
+            // after a conflict, this throws MissingResourceException if a racing move took the Item
+            Item item = from.removeItem(itemId);
+            to.insertItem(item, index);
+            try {
+                commitUnitOfWork(new UnitOfWork().save(from).save(to), deadline, session);
+            } catch (ConcurrentModificationException e) {
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.info("Retrying a move from Wishlist id={} to id={} after a concurrent write",
+                        fromWishlistId, toWishlistId);
+                from = getWishlistFromRepo(fromWishlistId, ReadConsistency.STRONG, deadline);
+                to = getWishlistFromRepo(toWishlistId, ReadConsistency.STRONG, deadline);
+                continue;
+            }
+
+            if (!from.ownerId().equals(to.ownerId())) {
+                searchIndex.removeItem(from.ownerId(), itemId);
+                searchIndex.addItem(to.ownerId(), item);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Searches the Items in every Wishlist the owner has, by the words in their details.
+     *
+     * Every word of the query must appear in an Item's details; the last word may be a
+     * prefix, so partially typed queries match. Matching is case-insensitive.
+     *
+     * The first search for an owner loads all of their Wishlists into an in-memory index;
+     * later searches are served from that index, which is kept up to date as Items are added
+     * through this service. Items added through other service instances are not seen.
+     *
+     * @param ownerId The id of the owner
+     * @param query The words to search for
+     * @return the matching Items, or an empty list if none match
+     */
+    public List<Item> searchItems(UUID ownerId, String query) {
+        // TODO: Authorize access
+        admission.admitOwner(ownerId);
+        searchIndex.register(ownerId).ifPresent(loader -> loadSearchIndex(ownerId, loader));
+        try {
+            return searchIndex.search(ownerId, query);
+        } catch (IllegalStateException e) { // another caller's load failed
+            logger.error("Error searching Items for ownerId={}", ownerId.toString(), e);
+            throw new RuntimeException("Internal Service Error");
+        }
+    }
+
+    /**
+     * Opens a session with read-your-writes consistency: reads made through the session see every
+     * write made through it, even when eventually consistent reads would not yet.
+     *
+     * Sessions are meant to be short-lived (e.g. one user interaction) and used by a single caller.
+     *
+     * @return a new session
+     */
+    public WishlistSession openSession() {
+        return new WishlistSession(this);
     }
 
     /*
      * PRIVATE FUNCTIONS
      */
 
-    private Wishlist getWishlistFromRepo(UUID wishlistId) {
+    private void loadSearchIndex(UUID ownerId, ItemSearchIndex.Loader loader) {
         try {
-            return repo.getById(wishlistId);
-        } catch (MissingResourceException e) {
+            for (Wishlist summary : repo.queryByOwner(ownerId)) {
+                repo.findById(summary.wishlistId())
+                        .ifPresent(wishlist -> wishlist.items().forEach(loader::add));
+            }
+            loader.finish();
+        } catch (Exception e) { // unhandled exceptions
+            loader.fail(e);
+            logger.error("Error loading search index for ownerId={}", ownerId.toString(), e);
+            throw new RuntimeException("Internal Service Error");
+        }
+    }
+
+    /**
+     * Reads a Wishlist, applies a change to it and saves it. If another writer saves the Wishlist
+     * in between, the change is applied again to a fresh read, up to MAX_WRITE_ATTEMPTS times.
+     * The owner is charged for the write once the Wishlist is read, unless the admitted write
+     * already charged them.
+     *
+     * @return the saved Wishlist
+     */
+    private Wishlist updateWishlist(UUID wishlistId, AdmissionController.Write write, Deadline deadline,
+                                    WishlistSession session, Consumer<Wishlist> change) {
+        Wishlist wishlist = getWishlistFromRepo(wishlistId, ReadConsistency.STRONG, deadline);
+        write.admitOwnerOf(wishlistId, wishlist.ownerId());
+        for (int attempt = 1; ; attempt++) {
+            change.accept(wishlist);
+            try {
+                saveWishlist(wishlist, deadline, session);
+                return wishlist;
+            } catch (ConcurrentModificationException e) {
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.info("Retrying a change to Wishlist id={} after a concurrent write", wishlistId);
+                wishlist = getWishlistFromRepo(wishlistId, ReadConsistency.STRONG, deadline);
+            }
+        }
+    }
+
+    private Wishlist getWishlistFromRepo(UUID wishlistId, ReadConsistency consistency, Deadline deadline) {
+        return findWishlistInRepo(wishlistId, consistency, deadline).orElseThrow(() -> new MissingResourceException(
+                "Wishlist not found",
+                Wishlist.class.getName(),
+                wishlistId.toString()));
+    }
+
+    private Optional<Wishlist> findWishlistInRepo(UUID wishlistId, ReadConsistency consistency, Deadline deadline) {
+        try {
+            return callRepo(deadline, () -> repo.findById(wishlistId, consistency));
+        } catch (DeadlineExceededException e) {
             throw e; // re-raise
         } catch (Exception e) { // unhandled exceptions
             logger.error("Error getting Wishlist by id={}", wishlistId.toString(), e);
@@ -133,14 +682,19 @@ public class WishlistService {
         }
     }
 
-    private void saveWishlist(Wishlist wishlist) {
+    private void saveWishlist(Wishlist wishlist, Deadline deadline, WishlistSession session) {
         if (wishlist == null) {
             throw new RuntimeException("Attempting to save null wishlist");
         }
 
         try {
-            repo.save(wishlist);
+            callRepo(deadline, () -> {
+                repo.save(wishlist);
+                return null;
+            });
 
+        } catch (DeadlineExceededException | ConcurrentModificationException e) {
+            throw e; // re-raise
         } catch (Exception e) { // unhandled exceptions
             String ownerId = "";
             String wishlistName = "";
@@ -151,5 +705,67 @@ public class WishlistService {
             logger.error("Error creating wishlist ownerId={} name={}", ownerId, wishlistName, e);
             throw new RuntimeException("Internal Service Error");
         }
+
+        wishlist.markSaved();
+        if (session != null) {
+            session.recordSaved(wishlist);
+        }
+    }
+
+    private void commitUnitOfWork(UnitOfWork unitOfWork, Deadline deadline, WishlistSession session) {
+        try {
+            callRepo(deadline, () -> {
+                repo.commit(unitOfWork);
+                return null;
+            });
+
+        } catch (DeadlineExceededException | ConcurrentModificationException e) {
+            throw e; // re-raise
+        } catch (Exception e) { // unhandled exceptions
+            List<String> wishlistIds = unitOfWork.wishlists()
+                    .stream()
+                    .map(wishlist -> wishlist.wishlistId().toString())
+                    .collect(Collectors.toList());
+            logger.error("Error committing wishlists ids={}", wishlistIds, e);
+            throw new RuntimeException("Internal Service Error");
+        }
+
+        for (Wishlist wishlist : unitOfWork.wishlists()) {
+            wishlist.markSaved();
+            if (session != null) {
+                session.recordSaved(wishlist);
+            }
+        }
+    }
+
+    /**
+     * Calls the Repository, waiting no longer than the Deadline allows. Calls with an unbounded
+     * Deadline run on the caller's thread; bounded ones run on the deadline executor and are
+     * cancelled (interrupted) if the Deadline expires.
+     */
+    private <T> T callRepo(Deadline deadline, Supplier<T> call) {
+        if (!deadline.isBounded()) {
+            return call.get();
+        }
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline expired before calling the repository");
+        }
+
+        Future<T> future = deadlineExecutor.submit(call::get);
+        try {
+            return future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException("Deadline expired waiting for the repository");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted waiting for the repository");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
     }
 }
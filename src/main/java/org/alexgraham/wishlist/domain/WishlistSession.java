@@ -0,0 +1,93 @@
+package org.alexgraham.wishlist.domain;
+
+import java.util.List;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A view of the WishlistService with read-your-writes consistency.
+ *
+ * Reads are eventually consistent, so they cost the same as a plain
+ * {@link WishlistService#getWishlistById(UUID)}. The session remembers the last version of each
+ * Wishlist it saved, and when a read comes back older than that (from a replica that has not yet
+ * seen the session's write), it returns its own copy instead. Newer writes, by anyone, are read
+ * as usual. Open a session with {@link WishlistService#openSession()}.
+ */
+public class WishlistSession {
+
+    private final WishlistService service;
+    private final Map<UUID, Wishlist> lastSaved = new ConcurrentHashMap<>();
+
+    WishlistSession(WishlistService service) {
+        this.service = service;
+    }
+
+    /**
+     * @see WishlistService#addItemToWishlist(UUID, String)
+     */
+    public Item addItemToWishlist(UUID wishlistId, String itemDetails) {
+        return service.addItemToWishlist(wishlistId, itemDetails, Deadline.none(), this);
+    }
+
+    /**
+     * @see WishlistService#addItemsToWishlist(UUID, List)
+     */
+    public List<Item> addItemsToWishlist(UUID wishlistId, List<String> itemDetails) {
+        return service.addItemsToWishlist(wishlistId, itemDetails, Deadline.none(), this);
+    }
+
+    /**
+     * @see WishlistService#createWishlist(UUID, String)
+     */
+    public Wishlist createWishlist(UUID ownerId, String name) {
+        return service.createWishlist(ownerId, name, Deadline.none(), this);
+    }
+
+    /**
+     * @see WishlistService#reorderItemInWishlist(UUID, UUID, int)
+     */
+    public void reorderItemInWishlist(UUID wishlistId, UUID itemId, int index) {
+        service.reorderItemInWishlist(wishlistId, itemId, index, Deadline.none(), this);
+    }
+
+    /**
+     * @see WishlistService#moveItem(UUID, UUID, UUID, int)
+     */
+    public void moveItem(UUID fromWishlistId, UUID toWishlistId, UUID itemId, int index) {
+        service.moveItem(fromWishlistId, toWishlistId, itemId, index, Deadline.none(), this);
+    }
+
+    /**
+     * Gets a Wishlist, reflecting every write made through this session.
+     *
+     * @see WishlistService#getWishlistById(UUID)
+     * @throws MissingResourceException if the wishlist does not exist
+     */
+    public Wishlist getWishlistById(UUID wishlistId) {
+        return findWishlistById(wishlistId).orElseThrow(() ->
+                new MissingResourceException("Wishlist not found", Wishlist.class.getName(), wishlistId.toString()));
+    }
+
+    /**
+     * Finds a Wishlist, reflecting every write made through this session.
+     *
+     * @see WishlistService#findWishlistById(UUID)
+     */
+    public Optional<Wishlist> findWishlistById(UUID wishlistId) {
+        Optional<Wishlist> read = service.findWishlistById(wishlistId, ReadConsistency.EVENTUAL);
+        Wishlist saved = lastSaved.get(wishlistId);
+        if (saved != null && (read.isEmpty() || read.get().version() < saved.version())) {
+            return Optional.of(saved.copy()); // the replica hasn't seen this session's write yet
+        }
+        return read;
+    }
+
+    void recordSaved(Wishlist wishlist) {
+        // writes from several threads may record out of order; keep the newest
+        lastSaved.merge(wishlist.wishlistId(), wishlist.copy(),
+                (recorded, saved) -> saved.version() >= recorded.version() ? saved : recorded);
+    }
+}
@@ -0,0 +1,207 @@
+package org.alexgraham.wishlist.domain;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.MissingResourceException;
+import java.util.UUID;
+
+/**
+ * An immutable Wishlist.
+ *
+ * Snapshots can be shared between threads (for example, held in a cache) without copying: every
+ * change returns a new snapshot, and the Items are an {@link ItemSequence}, so the new snapshot
+ * shares all but O(log n) of its Items' storage with the old one. The change methods follow the
+ * same rules as the corresponding Wishlist methods, and bump the version and lastModified the
+ * same way: a changed snapshot is one version past the stored version it was derived from,
+ * however many changes it has, so its {@link #toWishlist()} saves as a single new version.
+ *
+ * Use {@link AtomicWishlist} to hold a snapshot that several threads update; it treats each
+ * update it installs as a save, so the version it holds advances once per update.
+ */
+public final class WishlistSnapshot {
+    private final UUID wishlistId;
+    private final UUID ownerId;
+    private final String name;
+    private final ItemSequence items;
+    private final Instant lastModified;
+    private final long version;
+    private final long storedVersion;
+
+    private WishlistSnapshot(UUID wishlistId, UUID ownerId, String name, ItemSequence items, Instant lastModified,
+                             long version, long storedVersion) {
+        this.wishlistId = wishlistId;
+        this.ownerId = ownerId;
+        this.name = name;
+        this.items = items;
+        this.lastModified = lastModified;
+        this.version = version;
+        this.storedVersion = storedVersion;
+    }
+
+    /**
+     * @param wishlist a Wishlist loaded with its Items
+     * @return a snapshot of the Wishlist's current state
+     * @throws IllegalArgumentException if the Wishlist was loaded without its Items
+     */
+    public static WishlistSnapshot of(Wishlist wishlist) {
+        List<Item> items = wishlist.items();
+        if (items == null) {
+            throw new IllegalArgumentException("wishlist=" + wishlist.wishlistId() + " was loaded without its items");
+        }
+        return new WishlistSnapshot(wishlist.wishlistId(), wishlist.ownerId(), wishlist.name(), ItemSequence.of(items),
+                wishlist.lastModified(), wishlist.version(), wishlist.storedVersion());
+    }
+
+    /**
+     * @return a mutable Wishlist with this snapshot's state, including its stored version, for saving
+     *         or further editing
+     */
+    public Wishlist toWishlist() {
+        return Wishlist.restore(wishlistId, ownerId, name, new ArrayList<>(items.asList()), lastModified, version,
+                storedVersion);
+    }
+
+    public UUID wishlistId() {
+        return wishlistId;
+    }
+
+    public UUID ownerId() {
+        return ownerId;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public ItemSequence items() {
+        return items;
+    }
+
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @see Wishlist#storedVersion()
+     */
+    public long storedVersion() {
+        return storedVersion;
+    }
+
+    /**
+     * @return this snapshot with its changes recorded as saved, so that its stored version is its version
+     */
+    public WishlistSnapshot saved() {
+        if (storedVersion == version) {
+            return this;
+        }
+        return new WishlistSnapshot(wishlistId, ownerId, name, items, lastModified, version, version);
+    }
+
+    /**
+     * Takes on a changed copy of this snapshot's Wishlist, such as one read from this snapshot and
+     * then edited. Only the Items between the copy's first and last differences from this snapshot
+     * are replaced, so a save of a few changes shares the rest of the Items' storage.
+     *
+     * @param wishlist a Wishlist with the same id
+     * @return a snapshot with the Wishlist's name, Items, lastModified and versions
+     */
+    public WishlistSnapshot withChangesOf(Wishlist wishlist) {
+        if (!wishlistId.equals(wishlist.wishlistId())) {
+            throw new IllegalArgumentException("wishlist=" + wishlist.wishlistId() + " is not wishlist=" + wishlistId);
+        }
+        List<Item> changedItems = wishlist.items();
+        if (changedItems == null) {
+            throw new IllegalArgumentException("wishlist=" + wishlist.wishlistId() + " was loaded without its items");
+        }
+
+        // Items are immutable and shared by the copies made from a snapshot, so unchanged ones are the same objects
+        int common = Math.min(items.size(), changedItems.size());
+        int prefix = 0;
+        Iterator<Item> unchanged = items.iterator();
+        while (prefix < common && unchanged.next() == changedItems.get(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < common - prefix &&
+                items.get(items.size() - 1 - suffix) == changedItems.get(changedItems.size() - 1 - suffix)) {
+            suffix++;
+        }
+
+        ItemSequence newItems = items;
+        for (int i = prefix; i < items.size() - suffix; i++) {
+            newItems = newItems.remove(prefix);
+        }
+        for (int i = prefix; i < changedItems.size() - suffix; i++) {
+            newItems = newItems.insert(i, changedItems.get(i));
+        }
+        return new WishlistSnapshot(wishlistId, ownerId, wishlist.name(), newItems, wishlist.lastModified(),
+                wishlist.version(), wishlist.storedVersion());
+    }
+
+    /**
+     * @see Wishlist#addItem(Item)
+     */
+    public WishlistSnapshot withItemAdded(Item item) {
+        return changed(items.append(item));
+    }
+
+    /**
+     * @see Wishlist#reorderItem(UUID, int)
+     */
+    public WishlistSnapshot withItemReordered(UUID itemId, int index) {
+        if (itemId == null) {
+            throw new IllegalArgumentException("null itemId");
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("negative index=" + index);
+        }
+        if (items.size() <= 1) { // not large enough to re-order
+            return this;
+        }
+
+        int oldIndex = indexOfItem(itemId);
+        Item item = items.get(oldIndex);
+        return changed(items.remove(oldIndex).insert(Math.min(index, items.size() - 1), item));
+    }
+
+    /**
+     * @see Wishlist#removeItem(UUID)
+     */
+    public WishlistSnapshot withItemRemoved(UUID itemId) {
+        if (itemId == null) {
+            throw new IllegalArgumentException("null itemId");
+        }
+        return changed(items.remove(indexOfItem(itemId)));
+    }
+
+    /**
+     * @see Wishlist#insertItem(Item, int)
+     */
+    public WishlistSnapshot withItemInserted(Item item, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("negative index=" + index);
+        }
+        return changed(items.insert(Math.min(index, items.size()), item));
+    }
+
+    private WishlistSnapshot changed(ItemSequence newItems) {
+        return new WishlistSnapshot(wishlistId, ownerId, name, newItems, Instant.now(), storedVersion + 1,
+                storedVersion);
+    }
+
+    private int indexOfItem(UUID itemId) {
+        int index = items.indexOf(itemId);
+        if (index == -1) {
+            throw new MissingResourceException("the item with id=" + itemId + " does not exist in wishlist=" +
+                    wishlistId, Item.class.getName(), itemId.toString());
+        }
+        return index;
+    }
+}
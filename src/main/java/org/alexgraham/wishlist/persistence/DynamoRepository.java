@@ -1,20 +1,37 @@
 package org.alexgraham.wishlist.persistence;
 
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.ReadConsistency;
 import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
 import org.alexgraham.wishlist.domain.Wishlist;
 import software.amazon.awssdk.core.pagination.sync.SdkIterable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
-import java.util.MissingResourceException;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -23,32 +40,122 @@ import java.util.stream.Collectors;
  * persistence layer.
  */
 public class DynamoRepository implements Repository {
-    public static final String GSI_WISHLIST_BY_OWNERS = "20201229_WISHLIST_BY_OWNERS";
+    // projects name, itemCount, lastModified and version. A GSI's projection can't be changed in
+    // place, so this replaces 20201229_WISHLIST_BY_OWNERS (which projected only name): create it,
+    // deploy once it is ACTIVE, then delete the old index
+    public static final String GSI_WISHLIST_BY_OWNERS = "20261019_WISHLIST_BY_OWNERS";
+    // sorted by lastModified; sparse, since records saved before lastModified existed lack the sort key
+    public static final String GSI_WISHLIST_BY_OWNER_RECENCY = "20261019_WISHLIST_BY_OWNER_RECENCY";
 
+    // the most items DynamoDB allows in one TransactWriteItems call
+    static final int MAX_TRANSACTION_ITEMS = 25;
+
+    private final DynamoDbClient dynamoDb; // null when only given an enhanced client
+    private final DynamoDbEnhancedClient dynamoDbEnhanced;
+    private final String tableName;
     private final DynamoDbTable<WishlistStorable> wishlistStorableTable;
     private final DynamoDbIndex<WishlistStorable> wishlistByOwnerIndex;
+    private final DynamoDbIndex<WishlistStorable> wishlistByOwnerRecencyIndex;
+
+    /**
+     * Creates a DynamoRepository that can use projection expressions to read parts of a record,
+     * such as its version, without transferring the rest.
+     */
+    public DynamoRepository(DynamoDbClient dynamoDb, String tableName) {
+        this(dynamoDb, DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDb).build(), tableName);
+    }
 
+    /**
+     * Creates a DynamoRepository that reads whole records only.
+     *
+     * @deprecated reads of a version or a window of Items transfer the whole record with this
+     *             repository, which costs more than the reads they stand in for; use
+     *             {@link #DynamoRepository(DynamoDbClient, String)}
+     */
+    @Deprecated
     public DynamoRepository(DynamoDbEnhancedClient dynamoDbEnhanced, String tableName) {
+        this(null, dynamoDbEnhanced, tableName);
+    }
+
+    private DynamoRepository(DynamoDbClient dynamoDb, DynamoDbEnhancedClient dynamoDbEnhanced, String tableName) {
+        this.dynamoDb = dynamoDb;
+        this.dynamoDbEnhanced = dynamoDbEnhanced;
+        this.tableName = tableName;
         this.wishlistStorableTable = dynamoDbEnhanced.table(tableName, TableSchema.fromBean(WishlistStorable.class));
         this.wishlistByOwnerIndex = wishlistStorableTable.index(GSI_WISHLIST_BY_OWNERS);
+        this.wishlistByOwnerRecencyIndex = wishlistStorableTable.index(GSI_WISHLIST_BY_OWNER_RECENCY);
     }
 
     @Override
-    public Wishlist getById(UUID wishlistId) {
-        WishlistStorable storable = wishlistStorableTable.getItem(Key.builder()
-                .partitionValue(wishlistId.toString())
+    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+        WishlistStorable storable = wishlistStorableTable.getItem(GetItemEnhancedRequest.builder()
+                .key(uuidToKey(wishlistId))
+                .consistentRead(consistency == ReadConsistency.STRONG)
                 .build());
+        return Optional.ofNullable(storable).map(WishlistStorable::toWishlist);
+    }
 
-        if (storable == null) {
-            throw new MissingResourceException(
-                    "Wishlist not found",
-                    Wishlist.class.getName(),
-                    wishlistId.toString());
+    @Override
+    public Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        if (dynamoDb == null) {
+            return Repository.super.findVersionById(wishlistId, consistency);
         }
 
-        return storable.toWishlist();
+        // id is projected too, so a record saved before versions existed still comes back
+        GetItemResponse response = dynamoDb.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("id", AttributeValue.builder().s(wishlistId.toString()).build()))
+                .projectionExpression("id, #version")
+                .expressionAttributeNames(Map.of("#version", "version"))
+                .consistentRead(consistency == ReadConsistency.STRONG)
+                .build());
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return Optional.empty();
+        }
+        AttributeValue version = response.item().get("version");
+        return Optional.of(version == null ? 0L : Long.parseLong(version.n()));
     }
 
+    /**
+     * Reads only the requested Items, using list-index projections such as {@code items[20]}.
+     * DynamoDB returns the projected elements as a list in index order, so the result maps
+     * straight onto a WishlistStorable holding just that window.
+     */
+    @Override
+    public Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        if (dynamoDb == null) {
+            return Repository.super.findItemsById(wishlistId, offset, limit, consistency);
+        }
+
+        // id is projected too, so a Wishlist whose window is past its last Item is still found
+        StringBuilder projection = new StringBuilder("id");
+        for (int i = offset; i < offset + limit; i++) {
+            projection.append(", #items[").append(i).append(']');
+        }
+        GetItemResponse response = dynamoDb.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("id", AttributeValue.builder().s(wishlistId.toString()).build()))
+                .projectionExpression(projection.toString())
+                .expressionAttributeNames(Map.of("#items", "items"))
+                .consistentRead(consistency == ReadConsistency.STRONG)
+                .build());
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return Optional.empty();
+        }
+
+        WishlistStorable window = wishlistStorableTable.tableSchema().mapToItem(response.item());
+        if (window.getItems() == null) {
+            return Optional.of(List.of());
+        }
+        return Optional.of(window.getItems()
+                .stream()
+                .map(ItemStorable::toItem)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Queries the owner index, which projects each Wishlist's summary attributes and version.
+     */
     @Override
     public List<Wishlist> queryByOwner(UUID ownerId) {
         SdkIterable<Page<WishlistStorable>> queryResults = wishlistByOwnerIndex.query(QueryEnhancedRequest.builder()
@@ -64,9 +171,107 @@ public class DynamoRepository implements Repository {
         return results;
     }
 
+    /**
+     * Queries the recency index, letting DynamoDB order the results and stop after limit records.
+     */
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId, int limit, ListOrder order) {
+        SdkIterable<Page<WishlistStorable>> queryResults = wishlistByOwnerRecencyIndex.query(QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(uuidToKey(ownerId)))
+                .scanIndexForward(order == ListOrder.OLDEST_FIRST)
+                .limit(limit)
+                .build());
+
+        // pages are fetched lazily, so this only reads past the first page if it was cut short by size
+        return queryResults.stream()
+                .flatMap(page -> page.items().stream())
+                .limit(limit)
+                .map(WishlistStorable::toWishlist)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Saves with a put that is conditional on the record still being at the Wishlist's stored version.
+     *
+     * @throws ConcurrentModificationException if the record was saved by someone else in the meantime
+     */
     @Override
     public void save(Wishlist wishlist) {
-        wishlistStorableTable.putItem(WishlistStorable.fromWishlist(wishlist));
+        try {
+            wishlistStorableTable.putItem(PutItemEnhancedRequest.builder(WishlistStorable.class)
+                    .item(WishlistStorable.fromWishlist(wishlist))
+                    .conditionExpression(storedVersionCondition(wishlist))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            throw new ConcurrentModificationException("wishlist=" + wishlist.wishlistId() +
+                    " was changed after it was read, at version=" + wishlist.storedVersion(), e);
+        }
+    }
+
+    /**
+     * Saves the Wishlists in one transaction, with each put conditional on its record still being
+     * at the Wishlist's stored version.
+     *
+     * @throws ConcurrentModificationException if any of the records was saved by someone else in the meantime
+     */
+    @Override
+    public void commit(UnitOfWork unitOfWork) {
+        List<Wishlist> wishlists = unitOfWork.wishlists();
+        if (wishlists.isEmpty()) {
+            return;
+        }
+        if (wishlists.size() == 1) { // a single put is already atomic, and costs half the WCU
+            save(wishlists.get(0));
+            return;
+        }
+        if (wishlists.size() > MAX_TRANSACTION_ITEMS) {
+            throw new IllegalArgumentException("A unit of work can hold at most " + MAX_TRANSACTION_ITEMS +
+                    " wishlists, size=" + wishlists.size());
+        }
+
+        TransactWriteItemsEnhancedRequest.Builder request = TransactWriteItemsEnhancedRequest.builder();
+        wishlists.forEach(wishlist -> request.addPutItem(wishlistStorableTable,
+                PutItemEnhancedRequest.builder(WishlistStorable.class)
+                        .item(WishlistStorable.fromWishlist(wishlist))
+                        .conditionExpression(storedVersionCondition(wishlist))
+                        .build()));
+        try {
+            dynamoDbEnhanced.transactWriteItems(request.build());
+        } catch (TransactionCanceledException e) {
+            if (!isConflict(e)) {
+                throw e;
+            }
+            List<UUID> wishlistIds = wishlists.stream().map(Wishlist::wishlistId).collect(Collectors.toList());
+            throw new ConcurrentModificationException("one of wishlists=" + wishlistIds +
+                    " was changed after it was read", e);
+        }
+    }
+
+    // a failed version condition, or another transaction writing one of the same records
+    private static boolean isConflict(TransactionCanceledException e) {
+        return e.hasCancellationReasons() && e.cancellationReasons()
+                .stream()
+                .map(CancellationReason::code)
+                .anyMatch(code -> "ConditionalCheckFailed".equals(code) || "TransactionConflict".equals(code));
+    }
+
+    /*
+     * Records that do not exist yet, and records saved before versions existed, have no version
+     * attribute; both are at version 0.
+     */
+    private static Expression storedVersionCondition(Wishlist wishlist) {
+        if (wishlist.storedVersion() == 0) {
+            return Expression.builder()
+                    .expression("attribute_not_exists(#version)")
+                    .expressionNames(Map.of("#version", "version"))
+                    .build();
+        }
+        return Expression.builder()
+                .expression("#version = :storedVersion")
+                .expressionNames(Map.of("#version", "version"))
+                .expressionValues(Map.of(":storedVersion",
+                        AttributeValue.builder().n(Long.toString(wishlist.storedVersion())).build()))
+                .build();
     }
 
     private Key uuidToKey(UUID uuid) {
@@ -0,0 +1,253 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
+import org.alexgraham.wishlist.domain.Wishlist;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A Repository decorator that hedges reads to cut tail latency.
+ *
+ * A read is sent to the delegate; if it has not completed after a delay taken from a percentile
+ * of recently observed read latencies, a second, identical read is sent. Whichever finishes first
+ * is returned and the other is cancelled. Hedges are paid for out of a budget that grows by a fixed
+ * fraction of each read, so hedging can never add more than that fraction of extra load. The budget
+ * is kept in milli-hedges (thousandths of a hedge) so fractional ratios accrue exactly.
+ *
+ * Writes are passed straight through.
+ */
+public class HedgingRepository implements Repository {
+    private static final long MILLIHEDGES_PER_HEDGE = 1000;
+    private static final long MAX_BUDGET_MILLIHEDGES = 10 * MILLIHEDGES_PER_HEDGE; // at most 10 hedges banked
+
+    private final Repository delegate;
+    private final ExecutorService executor;
+    private final long minDelayNanos;
+    private final long milliHedgesPerRead;
+    private final LongSupplier nanoTime;
+
+    private final LatencyWindow latencies;
+    private final AtomicLong budgetMilliHedges = new AtomicLong(0);
+    private final LongAdder hedgesSent = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /**
+     * @param delegate the Repository to read from
+     * @param executor runs the primary and hedged reads; should have enough threads for two per caller
+     * @param percentile the latency percentile, e.g. 95.0, after which a hedge is sent
+     * @param minDelay the smallest delay before hedging, regardless of observed latency
+     * @param budgetRatio the most hedges to send, as a fraction of reads, e.g. 0.05
+     */
+    public HedgingRepository(Repository delegate,
+                             ExecutorService executor,
+                             double percentile,
+                             Duration minDelay,
+                             double budgetRatio) {
+        this(delegate, executor, percentile, minDelay, budgetRatio, System::nanoTime);
+    }
+
+    HedgingRepository(Repository delegate,
+                      ExecutorService executor,
+                      double percentile,
+                      Duration minDelay,
+                      double budgetRatio,
+                      LongSupplier nanoTime) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile must be in (0, 100), percentile=" + percentile);
+        }
+        if (budgetRatio < 0 || budgetRatio > 1) {
+            throw new IllegalArgumentException("budgetRatio must be in [0, 1], budgetRatio=" + budgetRatio);
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.minDelayNanos = minDelay.toNanos();
+        this.milliHedgesPerRead = Math.round(budgetRatio * MILLIHEDGES_PER_HEDGE);
+        this.nanoTime = nanoTime;
+        this.latencies = new LatencyWindow(1024, percentile);
+    }
+
+    @Override
+    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+        return hedge(() -> delegate.findById(wishlistId, consistency));
+    }
+
+    @Override
+    public Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        return hedge(() -> delegate.findVersionById(wishlistId, consistency));
+    }
+
+    @Override
+    public Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        return hedge(() -> delegate.findItemsById(wishlistId, offset, limit, consistency));
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId) {
+        return hedge(() -> delegate.queryByOwner(ownerId));
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId, int limit, ListOrder order) {
+        return hedge(() -> delegate.queryByOwner(ownerId, limit, order));
+    }
+
+    @Override
+    public void save(Wishlist wishlist) {
+        delegate.save(wishlist);
+    }
+
+    @Override
+    public void commit(UnitOfWork unitOfWork) {
+        delegate.commit(unitOfWork);
+    }
+
+    /**
+     * @return the number of hedged reads sent
+     */
+    public long hedgesSent() {
+        return hedgesSent.sum();
+    }
+
+    /**
+     * @return the number of hedged reads that finished before their primary read
+     */
+    public long hedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    private <T> T hedge(Callable<T> read) {
+        earnBudget();
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        long primaryStart = nanoTime.getAsLong();
+        Future<T> primary = completion.submit(timed(read));
+        Future<T> hedged = null;
+        try {
+            Future<T> first = completion.poll(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            if (first == null && spendBudget()) {
+                hedgesSent.increment();
+                hedged = completion.submit(timed(read));
+            }
+            if (first == null) {
+                first = completion.take();
+            }
+
+            try {
+                T result = first.get();
+                if (first == hedged) {
+                    hedgesWon.increment();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (hedged == null) {
+                    throw e;
+                }
+                // one of the two failed; the other may still succeed
+                return completion.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for a read", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            if (primary.cancel(true)) {
+                // a primary that lost to its hedge was at least this slow; without the sample the
+                // window would only see the reads fast enough to finish, and the delay would shrink
+                latencies.record(nanoTime.getAsLong() - primaryStart);
+            }
+            if (hedged != null) {
+                hedged.cancel(true);
+            }
+        }
+    }
+
+    private <T> Callable<T> timed(Callable<T> read) {
+        return () -> {
+            long start = nanoTime.getAsLong();
+            T result = read.call();
+            latencies.record(nanoTime.getAsLong() - start);
+            return result;
+        };
+    }
+
+    private long hedgeDelayNanos() {
+        return Math.max(minDelayNanos, latencies.percentile());
+    }
+
+    private void earnBudget() {
+        budgetMilliHedges.accumulateAndGet(milliHedgesPerRead,
+                (budget, earned) -> Math.min(MAX_BUDGET_MILLIHEDGES, budget + earned));
+    }
+
+    private boolean spendBudget() {
+        while (true) {
+            long budget = budgetMilliHedges.get();
+            if (budget < MILLIHEDGES_PER_HEDGE) {
+                return false;
+            }
+            if (budgetMilliHedges.compareAndSet(budget, budget - MILLIHEDGES_PER_HEDGE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A fixed-size ring of recent latencies. The percentile is recomputed at most once every
+     * {@code size / 16} samples, so reads don't pay for a sort.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private final double percentile;
+        private final int recomputeEvery;
+        private int next;
+        private int count;
+        private int sinceRecompute;
+        private long cachedValue = Long.MAX_VALUE; // never hedge until there is data
+
+        LatencyWindow(int size, double percentile) {
+            this.samples = new long[size];
+            this.percentile = percentile;
+            this.recomputeEvery = Math.max(1, size / 16);
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            sinceRecompute++;
+        }
+
+        synchronized long percentile() {
+            if (count >= recomputeEvery && sinceRecompute >= recomputeEvery) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+                cachedValue = sorted[Math.max(0, Math.min(index, count - 1))];
+                sinceRecompute = 0;
+            }
+            return cachedValue;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.alexgraham.wishlist.persistence;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+/**
+ * A change to the stored shape of wishlist records, applied to live data by a MigrationRunner.
+ *
+ * Migrations work on raw DynamoDB attribute maps rather than WishlistStorable, since their job is
+ * to move records from one shape to another, and the bean only describes one of them. They must
+ * be idempotent: a record that has already been migrated must report that it needs no migration.
+ */
+public interface Migration {
+
+    /**
+     * @param item a stored record
+     * @return true if the record is in the old shape and should be rewritten
+     */
+    boolean needsMigration(Map<String, AttributeValue> item);
+
+    /**
+     * @param item a stored record in the old shape
+     * @return the record in the new shape (the key attributes must not change)
+     */
+    Map<String, AttributeValue> migrate(Map<String, AttributeValue> item);
+}
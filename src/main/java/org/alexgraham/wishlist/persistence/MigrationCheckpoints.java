@@ -0,0 +1,128 @@
+package org.alexgraham.wishlist.persistence;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Where a MigrationRunner has got to in each scan segment, kept in a properties file so an
+ * interrupted migration can resume rather than start over.
+ *
+ * Scan keys are stored per attribute, with a type prefix ("S:" or "N:"); tables keyed on binary
+ * attributes are not supported.
+ */
+class MigrationCheckpoints {
+    private static final String TOTAL_SEGMENTS = "totalSegments";
+
+    private final Path file;
+    private final Properties properties = new Properties();
+
+    /**
+     * @param file the checkpoint file, or null to keep checkpoints in memory only
+     * @param totalSegments the number of scan segments; must match the file's, if it exists
+     */
+    MigrationCheckpoints(Path file, int totalSegments) {
+        this.file = file;
+        if (file != null && Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read checkpoint file " + file, e);
+            }
+            String saved = properties.getProperty(TOTAL_SEGMENTS);
+            if (saved != null && Integer.parseInt(saved) != totalSegments) {
+                throw new IllegalArgumentException("Checkpoint file " + file + " was written for totalSegments="
+                        + saved + ", not " + totalSegments);
+            }
+        }
+        properties.setProperty(TOTAL_SEGMENTS, Integer.toString(totalSegments));
+    }
+
+    synchronized boolean isDone(int segment) {
+        return Boolean.parseBoolean(properties.getProperty(prefix(segment) + "done"));
+    }
+
+    /**
+     * @return the key to resume the segment's scan from, or null to start from the beginning
+     */
+    synchronized Map<String, AttributeValue> lastKey(int segment) {
+        String keyPrefix = prefix(segment) + "key.";
+        Map<String, AttributeValue> key = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(keyPrefix)) {
+                key.put(name.substring(keyPrefix.length()), decode(properties.getProperty(name)));
+            }
+        }
+        return key.isEmpty() ? null : key;
+    }
+
+    synchronized void save(int segment, Map<String, AttributeValue> lastKey) {
+        clearKey(segment);
+        lastKey.forEach((name, value) -> properties.setProperty(prefix(segment) + "key." + name, encode(value)));
+        flush();
+    }
+
+    synchronized void markDone(int segment) {
+        clearKey(segment);
+        properties.setProperty(prefix(segment) + "done", "true");
+        flush();
+    }
+
+    private void clearKey(int segment) {
+        String keyPrefix = prefix(segment) + "key.";
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(keyPrefix))
+                .forEach(properties::remove);
+    }
+
+    // written to a temporary file and moved into place, so a crash never leaves a torn checkpoint
+    private void flush() {
+        if (file == null) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "wishlist migration checkpoints");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint file " + temp, e);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replace checkpoint file " + file, e);
+        }
+    }
+
+    private static String prefix(int segment) {
+        return "segment." + segment + ".";
+    }
+
+    private static String encode(AttributeValue value) {
+        if (value.s() != null) {
+            return "S:" + value.s();
+        } else if (value.n() != null) {
+            return "N:" + value.n();
+        }
+        throw new IllegalArgumentException("Only string and number key attributes are supported, value=" + value);
+    }
+
+    private static AttributeValue decode(String encoded) {
+        String value = encoded.substring(2);
+        if (encoded.startsWith("S:")) {
+            return AttributeValue.builder().s(value).build();
+        } else if (encoded.startsWith("N:")) {
+            return AttributeValue.builder().n(value).build();
+        }
+        throw new IllegalArgumentException("Unrecognized checkpoint key value=" + encoded);
+    }
+}
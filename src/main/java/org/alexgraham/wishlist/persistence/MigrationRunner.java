@@ -0,0 +1,376 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a Migration to every record in the wishlist table, online.
+ *
+ * The table is read with a parallel segmented scan, one thread per segment. Each record that needs
+ * migrating is rewritten with a conditional put that only succeeds if the record is still at the
+ * version that was scanned, and that bumps the version, just like a save through DynamoRepository.
+ * So a user edit made in the meantime is never overwritten (the record is re-read and migrated
+ * again instead), and a user edit based on the pre-migration record cannot overwrite the migrated
+ * one either. This relies on every writer versioning its writes. The scan and the writes are throttled
+ * to read- and write-capacity budgets so the migration leaves headroom for live traffic, and each
+ * segment's scan position is checkpointed after every page so an interrupted run resumes where it left off.
+ */
+public class MigrationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(MigrationRunner.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final String VERSION_ATTRIBUTE = "version";
+    private static final int MAX_CONFLICT_RETRIES = 3;
+    private static final int WRITE_CAPACITY_UNIT_BYTES = 1024;
+    private static final int READ_CAPACITY_UNIT_BYTES = 4096;
+
+    private final DynamoDbClient dynamoDb;
+    private final String tableName;
+    private final Migration migration;
+    private final int totalSegments;
+    private final int pageSize;
+    private final TokenBucket readCapacity;
+    private final TokenBucket writeCapacity;
+    private final MigrationCheckpoints checkpoints;
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder migrated = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile long startedAtNanos;
+
+    /**
+     * @param dynamoDb the DynamoDB client
+     * @param tableName the table to migrate
+     * @param migration the change to apply
+     * @param totalSegments the number of scan segments (and threads) to use
+     * @param readCapacityUnitsPerSecond the read capacity the migration may consume
+     * @param writeCapacityUnitsPerSecond the write capacity the migration may consume
+     * @param checkpointFile where to keep progress, or null to not checkpoint
+     */
+    public MigrationRunner(DynamoDbClient dynamoDb,
+                           String tableName,
+                           Migration migration,
+                           int totalSegments,
+                           double readCapacityUnitsPerSecond,
+                           double writeCapacityUnitsPerSecond,
+                           Path checkpointFile) {
+        this(dynamoDb, tableName, migration, totalSegments, readCapacityUnitsPerSecond, writeCapacityUnitsPerSecond,
+                checkpointFile, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize the most records to read per scan request; progress is checkpointed after each page
+     * @see #MigrationRunner(DynamoDbClient, String, Migration, int, double, double, Path)
+     */
+    public MigrationRunner(DynamoDbClient dynamoDb,
+                           String tableName,
+                           Migration migration,
+                           int totalSegments,
+                           double readCapacityUnitsPerSecond,
+                           double writeCapacityUnitsPerSecond,
+                           Path checkpointFile,
+                           int pageSize) {
+        if (totalSegments <= 0) {
+            throw new IllegalArgumentException("totalSegments must be positive, totalSegments=" + totalSegments);
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive, pageSize=" + pageSize);
+        }
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+        this.migration = migration;
+        this.totalSegments = totalSegments;
+        this.pageSize = pageSize;
+        this.readCapacity = new TokenBucket(readCapacityUnitsPerSecond, Math.max(1, readCapacityUnitsPerSecond));
+        this.writeCapacity = new TokenBucket(writeCapacityUnitsPerSecond, Math.max(1, writeCapacityUnitsPerSecond));
+        this.checkpoints = new MigrationCheckpoints(checkpointFile, totalSegments);
+    }
+
+    /**
+     * Runs the migration to completion, skipping segments a previous run already finished.
+     *
+     * @return the final progress
+     * @throws InterruptedException if interrupted; progress up to the last completed page is checkpointed
+     */
+    public Progress run() throws InterruptedException {
+        startedAtNanos = System.nanoTime();
+        List<String> keyAttributes = dynamoDb.describeTable(DescribeTableRequest.builder().tableName(tableName).build())
+                .table()
+                .keySchema()
+                .stream()
+                .map(KeySchemaElement::attributeName)
+                .collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(totalSegments);
+        try {
+            List<Future<Void>> segments = new ArrayList<>();
+            for (int segment = 0; segment < totalSegments; segment++) {
+                if (checkpoints.isDone(segment)) {
+                    continue;
+                }
+                int thisSegment = segment;
+                segments.add(executor.submit(() -> {
+                    runSegment(thisSegment, keyAttributes);
+                    return null;
+                }));
+            }
+            for (Future<Void> segment : segments) {
+                segment.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Migration of table=" + tableName + " failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Progress progress = progress();
+        logger.info("Migration of table={} finished: {}", tableName, progress);
+        return progress;
+    }
+
+    /**
+     * @return how far the migration has got; safe to call from another thread while it runs
+     */
+    public Progress progress() {
+        long elapsed = startedAtNanos == 0 ? 0 : System.nanoTime() - startedAtNanos;
+        return new Progress(scanned.sum(), migrated.sum(), conflicts.sum(), skipped.sum(), Duration.ofNanos(elapsed));
+    }
+
+    private void runSegment(int segment, List<String> keyAttributes) throws InterruptedException {
+        Map<String, AttributeValue> startKey = checkpoints.lastKey(segment);
+        ScanResponse page;
+        do {
+            page = dynamoDb.scan(ScanRequest.builder()
+                    .tableName(tableName)
+                    .segment(segment)
+                    .totalSegments(totalSegments)
+                    .limit(pageSize)
+                    .exclusiveStartKey(startKey)
+                    .build());
+            // a page's size is only known once it has been read, so it is paid for before the next request
+            acquireScanCapacity(page.items());
+
+            for (Map<String, AttributeValue> item : page.items()) {
+                scanned.increment();
+                migrateItem(item, keyAttributes);
+            }
+
+            startKey = page.hasLastEvaluatedKey() && !page.lastEvaluatedKey().isEmpty() ? page.lastEvaluatedKey() : null;
+            if (startKey != null) {
+                checkpoints.save(segment, startKey);
+            }
+            logger.debug("Migration of table={} segment={}: {}", tableName, segment, progress());
+        } while (startKey != null);
+
+        checkpoints.markDone(segment);
+    }
+
+    private void migrateItem(Map<String, AttributeValue> item, List<String> keyAttributes) throws InterruptedException {
+        Map<String, AttributeValue> current = item;
+        for (int attempt = 0; attempt <= MAX_CONFLICT_RETRIES; attempt++) {
+            if (current == null || !migration.needsMigration(current)) {
+                return; // deleted, or already migrated (perhaps by the user edit we conflicted with)
+            }
+
+            Map<String, AttributeValue> updated = migration.migrate(new HashMap<>(current));
+            acquireWriteCapacity(updated);
+            try {
+                dynamoDb.putItem(conditionalPut(current, updated));
+                migrated.increment();
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                conflicts.increment();
+                current = reread(current, keyAttributes);
+            }
+        }
+
+        skipped.increment();
+        logger.warn("Skipped migrating a record in table={} after {} conflicting edits, key={}",
+                tableName, MAX_CONFLICT_RETRIES + 1, keyOf(current, keyAttributes));
+    }
+
+    /*
+     * Only writes if the record is still at the version that was scanned; records saved before
+     * versions existed have none. The migrated record gets the next version.
+     */
+    private PutItemRequest conditionalPut(Map<String, AttributeValue> original, Map<String, AttributeValue> updated) {
+        AttributeValue version = original.get(VERSION_ATTRIBUTE);
+        long nextVersion = version == null ? 1 : Long.parseLong(version.n()) + 1;
+        Map<String, AttributeValue> item = new HashMap<>(updated);
+        item.put(VERSION_ATTRIBUTE, AttributeValue.builder().n(Long.toString(nextVersion)).build());
+
+        PutItemRequest.Builder request = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(item)
+                .expressionAttributeNames(Map.of("#version", VERSION_ATTRIBUTE));
+        if (version == null) {
+            return request.conditionExpression("attribute_not_exists(#version)").build();
+        }
+        return request.conditionExpression("#version = :version")
+                .expressionAttributeValues(Map.of(":version", version))
+                .build();
+    }
+
+    private Map<String, AttributeValue> reread(Map<String, AttributeValue> item, List<String> keyAttributes)
+            throws InterruptedException {
+        Map<String, AttributeValue> latest = dynamoDb.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(keyOf(item, keyAttributes))
+                .consistentRead(true)
+                .build())
+                .item();
+        if (latest == null || latest.isEmpty()) {
+            acquire(readCapacity, 1);
+            return null;
+        }
+        // a strongly consistent read costs a unit per 4 KB of the item
+        acquire(readCapacity, unitsOf(estimateSize(latest), READ_CAPACITY_UNIT_BYTES));
+        return latest;
+    }
+
+    // an eventually consistent scan costs half a unit per 4 KB of the page's items, summed
+    private void acquireScanCapacity(List<Map<String, AttributeValue>> items) throws InterruptedException {
+        long size = 0;
+        for (Map<String, AttributeValue> item : items) {
+            size += estimateSize(item);
+        }
+        acquire(readCapacity, unitsOf(size, 2 * READ_CAPACITY_UNIT_BYTES));
+    }
+
+    private void acquireWriteCapacity(Map<String, AttributeValue> item) throws InterruptedException {
+        acquire(writeCapacity, unitsOf(estimateSize(item), WRITE_CAPACITY_UNIT_BYTES));
+    }
+
+    private static long unitsOf(long bytes, int bytesPerUnit) {
+        return Math.max(1, (bytes + bytesPerUnit - 1) / bytesPerUnit);
+    }
+
+    private static void acquire(TokenBucket capacity, long units) throws InterruptedException {
+        for (long i = 0; i < units; i++) {
+            capacity.acquire();
+        }
+    }
+
+    private static Map<String, AttributeValue> keyOf(Map<String, AttributeValue> item, List<String> keyAttributes) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        keyAttributes.forEach(name -> key.put(name, item.get(name)));
+        return key;
+    }
+
+    // an approximation of DynamoDB's item size accounting, for throttling
+    private static long estimateSize(Map<String, AttributeValue> item) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            size += utf8Length(attribute.getKey()) + estimateSize(attribute.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateSize(AttributeValue value) {
+        if (value.s() != null) {
+            return utf8Length(value.s());
+        } else if (value.n() != null) {
+            return value.n().length();
+        } else if (value.b() != null) {
+            return value.b().asByteArray().length;
+        } else if (value.hasL()) {
+            return 3 + value.l().stream().mapToLong(element -> 1 + estimateSize(element)).sum();
+        } else if (value.hasM()) {
+            return 3 + estimateSize(value.m());
+        } else if (value.hasSs()) {
+            return value.ss().stream().mapToLong(MigrationRunner::utf8Length).sum();
+        } else if (value.hasNs()) {
+            return value.ns().stream().mapToLong(String::length).sum();
+        } else if (value.hasBs()) {
+            return value.bs().stream().mapToLong(bytes -> bytes.asByteArray().length).sum();
+        }
+        return 1; // BOOL and NULL
+    }
+
+    private static long utf8Length(String string) {
+        return string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * A snapshot of a migration's progress.
+     */
+    public static final class Progress {
+        private final long scanned;
+        private final long migrated;
+        private final long conflicts;
+        private final long skipped;
+        private final Duration elapsed;
+
+        private Progress(long scanned, long migrated, long conflicts, long skipped, Duration elapsed) {
+            this.scanned = scanned;
+            this.migrated = migrated;
+            this.conflicts = conflicts;
+            this.skipped = skipped;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return records read by the scan (in this run)
+         */
+        public long scanned() {
+            return scanned;
+        }
+
+        /**
+         * @return records rewritten
+         */
+        public long migrated() {
+            return migrated;
+        }
+
+        /**
+         * @return conditional writes that failed because the record was edited concurrently
+         */
+        public long conflicts() {
+            return conflicts;
+        }
+
+        /**
+         * @return records given up on after repeated conflicts; run the migration again to pick them up
+         */
+        public long skipped() {
+            return skipped;
+        }
+
+        public double recordsPerSecond() {
+            double seconds = elapsed.toNanos() / 1e9;
+            return seconds == 0 ? 0 : scanned / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("scanned=%d migrated=%d conflicts=%d skipped=%d elapsed=%s records/s=%.1f",
+                    scanned, migrated, conflicts, skipped, elapsed, recordsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
+import org.alexgraham.wishlist.domain.Wishlist;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Repository decorator that remembers, for a short time, which wishlist ids were not found.
+ *
+ * Repeated lookups of a nonexistent id (scrapers, bots, stale links) are answered from memory
+ * instead of going to the backing Repository. Saving a Wishlist clears its entry, so a wishlist
+ * created through this Repository is visible immediately; wishlists created elsewhere become
+ * visible once the entry's TTL expires. Strongly consistent reads always go to the backing Repository.
+ *
+ * When the cache is full, the oldest entry (which is also the next to expire) makes way for the new one.
+ */
+public class NegativeCachingRepository implements Repository {
+
+    // saves bump the generation of their id's stripe, so a miss read before a save is not cached after it
+    private static final int GENERATION_STRIPES = 256;
+
+    private final Repository delegate;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+
+    // wishlist id -> time (epoch millis) at which the cached miss expires. Kept in insertion order,
+    // which is also expiry order, since every entry lives for the same TTL. Guarded by this.
+    private final Map<UUID, Long> misses = new LinkedHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public NegativeCachingRepository(Repository delegate, Duration ttl, int maxEntries) {
+        this(delegate, ttl, maxEntries, Clock.systemUTC());
+    }
+
+    NegativeCachingRepository(Repository delegate, Duration ttl, int maxEntries, Clock clock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive, ttl=" + ttl);
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive, maxEntries=" + maxEntries);
+        }
+        this.delegate = delegate;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+        long generation = generations.get(stripe(wishlistId));
+        if (isCachedMiss(wishlistId, consistency)) {
+            return Optional.empty();
+        }
+
+        Optional<Wishlist> wishlist = delegate.findById(wishlistId, consistency);
+        if (wishlist.isEmpty()) {
+            recordMiss(wishlistId, generation);
+        }
+        return wishlist;
+    }
+
+    @Override
+    public Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        long generation = generations.get(stripe(wishlistId));
+        if (isCachedMiss(wishlistId, consistency)) {
+            return Optional.empty();
+        }
+
+        Optional<Long> version = delegate.findVersionById(wishlistId, consistency);
+        if (version.isEmpty()) {
+            recordMiss(wishlistId, generation);
+        }
+        return version;
+    }
+
+    @Override
+    public Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        long generation = generations.get(stripe(wishlistId));
+        if (isCachedMiss(wishlistId, consistency)) {
+            return Optional.empty();
+        }
+
+        Optional<List<Item>> items = delegate.findItemsById(wishlistId, offset, limit, consistency);
+        if (items.isEmpty()) {
+            recordMiss(wishlistId, generation);
+        }
+        return items;
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId) {
+        return delegate.queryByOwner(ownerId);
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId, int limit, ListOrder order) {
+        return delegate.queryByOwner(ownerId, limit, order);
+    }
+
+    @Override
+    public void save(Wishlist wishlist) {
+        delegate.save(wishlist);
+        forgetMiss(wishlist.wishlistId());
+    }
+
+    @Override
+    public void commit(UnitOfWork unitOfWork) {
+        delegate.commit(unitOfWork);
+        unitOfWork.wishlists().forEach(wishlist -> forgetMiss(wishlist.wishlistId()));
+    }
+
+    /**
+     * @return the number of ids currently held as misses (including expired ones not yet purged)
+     */
+    public synchronized int size() {
+        return misses.size();
+    }
+
+    private synchronized boolean isCachedMiss(UUID wishlistId, ReadConsistency consistency) {
+        Long expiresAt = misses.get(wishlistId);
+        if (expiresAt != null) {
+            if (expiresAt > clock.millis() && consistency != ReadConsistency.STRONG) {
+                return true;
+            }
+            misses.remove(wishlistId);
+        }
+        return false;
+    }
+
+    /**
+     * Caches a miss, unless the Wishlist was saved since the read that missed it began.
+     */
+    private synchronized void recordMiss(UUID wishlistId, long generationBeforeRead) {
+        if (generations.get(stripe(wishlistId)) != generationBeforeRead) {
+            return;
+        }
+
+        long now = clock.millis();
+        Iterator<Long> oldest = misses.values().iterator();
+        while (oldest.hasNext()) {
+            long expiresAt = oldest.next();
+            if (expiresAt > now && misses.size() < maxEntries) {
+                break;
+            }
+            oldest.remove(); // expired, or the oldest entry when the cache is full
+        }
+        misses.remove(wishlistId); // so a re-recorded miss moves to the back
+        misses.put(wishlistId, now + ttlMillis);
+    }
+
+    private synchronized void forgetMiss(UUID wishlistId) {
+        generations.incrementAndGet(stripe(wishlistId));
+        misses.remove(wishlistId);
+    }
+
+    private static int stripe(UUID wishlistId) {
+        return wishlistId.hashCode() & (GENERATION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,414 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
+import org.alexgraham.wishlist.domain.Wishlist;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A Repository decorator that caches Wishlists outside the Java heap.
+ *
+ * Wishlists are stored in {@link WishlistCodec}'s binary form in direct ByteBuffer slabs, and are
+ * only turned back into objects when read. The table from wishlist id to entry is off-heap too (an
+ * {@link OffHeapIndex}), so a large cache adds almost nothing for the garbage collector to trace.
+ * Slabs are written log-style: entries are appended to the current slab, and when all slabs are
+ * full the oldest slab is cleared and reused, evicting whatever it held. A Wishlist that is
+ * re-saved is appended again; its old copy is dead space until its slab is reused.
+ *
+ * The cache is write-through: Wishlists saved through this Repository are cached as saved.
+ * Eventually consistent reads are served from the cache; strongly consistent reads always go to
+ * the backing Repository (and refresh the cache). Entries also expire a fixed time after they
+ * were written, which bounds how stale a read can be when other processes write to the table.
+ * A read that misses only fills the cache if nothing saved or invalidated the Wishlist while the
+ * read was in flight, so a slow read can't overwrite a newer entry with what it read.
+ */
+public class OffHeapCachingRepository implements Repository {
+    private static final int ENTRY_HEADER_BYTES = 4 + 8; // encoded length, written-at millis
+
+    // writes and invalidations bump the generation of their id's stripe, so a read that began
+    // before one of them doesn't fill the cache after it
+    private static final int GENERATION_STRIPES = 256;
+
+    private final Repository delegate;
+    private final int slabSize;
+    private final long expireAfterWriteMillis;
+    private final Clock clock;
+
+    private final ByteBuffer[] slabs;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    // guards everything below, and the contents of the slabs
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OffHeapIndex index = new OffHeapIndex(1024); // wishlist id -> (slab << 32 | offset)
+    private final int[] slabEnds; // the end of the last entry written to each slab
+    private int currentSlab;
+    private int writeOffset;
+    private long liveBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate the Repository to cache
+     * @param maxBytes the most off-heap memory to use; rounded down to a whole number of slabs
+     * @param slabSize the size of each slab, in bytes; Wishlists that encode larger than this are not cached
+     * @param expireAfterWrite how long an entry may be served after it was written
+     */
+    public OffHeapCachingRepository(Repository delegate, long maxBytes, int slabSize, Duration expireAfterWrite) {
+        this(delegate, maxBytes, slabSize, expireAfterWrite, Clock.systemUTC());
+    }
+
+    OffHeapCachingRepository(Repository delegate, long maxBytes, int slabSize, Duration expireAfterWrite, Clock clock) {
+        if (slabSize <= ENTRY_HEADER_BYTES) {
+            throw new IllegalArgumentException("slabSize too small, slabSize=" + slabSize);
+        }
+        long slabCount = maxBytes / slabSize;
+        if (slabCount < 2 || slabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxBytes must hold between 2 and Integer.MAX_VALUE slabs, maxBytes="
+                    + maxBytes + " slabSize=" + slabSize);
+        }
+        this.delegate = delegate;
+        this.slabSize = slabSize;
+        this.expireAfterWriteMillis = expireAfterWrite.toMillis();
+        this.clock = clock;
+        this.slabs = new ByteBuffer[(int) slabCount];
+        this.slabEnds = new int[slabs.length];
+    }
+
+    @Override
+    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+        long generation = generations.get(stripe(wishlistId));
+        if (consistency != ReadConsistency.STRONG) {
+            Optional<Wishlist> cached = get(wishlistId);
+            if (cached.isPresent()) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+        }
+
+        Optional<Wishlist> wishlist = delegate.findById(wishlistId, consistency);
+        if (wishlist.isPresent()) {
+            fill(wishlist.get(), generation);
+        } else {
+            invalidate(wishlistId);
+        }
+        return wishlist;
+    }
+
+    /**
+     * Answers eventually consistent lookups from the cached entry's encoded version, without
+     * decoding the Wishlist.
+     */
+    @Override
+    public Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        if (consistency != ReadConsistency.STRONG) {
+            lock.readLock().lock();
+            try {
+                long location = index.get(wishlistId);
+                if (location != OffHeapIndex.ABSENT) {
+                    ByteBuffer entry = entryAt(location);
+                    long writtenAt = entry.getLong(entry.position() + 4);
+                    if (clock.millis() - writtenAt < expireAfterWriteMillis) {
+                        hits.increment();
+                        return Optional.of(entry.getLong(entry.position() + ENTRY_HEADER_BYTES
+                                + WishlistCodec.VERSION_OFFSET));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            misses.increment();
+        }
+
+        // not worth reading the whole Wishlist to fill the cache
+        return delegate.findVersionById(wishlistId, consistency);
+    }
+
+    /**
+     * Answers eventually consistent lookups from the cached entry, decoding only the requested
+     * Items.
+     */
+    @Override
+    public Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        if (consistency != ReadConsistency.STRONG) {
+            lock.readLock().lock();
+            try {
+                long location = index.get(wishlistId);
+                if (location != OffHeapIndex.ABSENT) {
+                    ByteBuffer entry = entryAt(location);
+                    long writtenAt = entry.getLong(entry.position() + 4);
+                    if (clock.millis() - writtenAt < expireAfterWriteMillis) {
+                        entry.position(entry.position() + ENTRY_HEADER_BYTES);
+                        List<Item> items = WishlistCodec.decodeItems(entry, offset, limit);
+                        if (items != null) {
+                            hits.increment();
+                            return Optional.of(items);
+                        }
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            misses.increment();
+        }
+
+        return delegate.findItemsById(wishlistId, offset, limit, consistency);
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId) {
+        return delegate.queryByOwner(ownerId);
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId, int limit, ListOrder order) {
+        return delegate.queryByOwner(ownerId, limit, order);
+    }
+
+    @Override
+    public void save(Wishlist wishlist) {
+        invalidate(wishlist.wishlistId());
+        delegate.save(wishlist);
+        put(wishlist);
+    }
+
+    @Override
+    public void commit(UnitOfWork unitOfWork) {
+        unitOfWork.wishlists().forEach(wishlist -> invalidate(wishlist.wishlistId()));
+        delegate.commit(unitOfWork);
+        unitOfWork.wishlists().forEach(this::put);
+    }
+
+    /**
+     * @return a snapshot of the cache's statistics
+     */
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long allocatedBytes = index.allocatedBytes();
+            for (ByteBuffer slab : slabs) {
+                if (slab != null) {
+                    allocatedBytes += slab.capacity();
+                }
+            }
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), index.size(), allocatedBytes, liveBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Optional<Wishlist> get(UUID wishlistId) {
+        long location;
+        lock.readLock().lock();
+        try {
+            location = index.get(wishlistId);
+            if (location == OffHeapIndex.ABSENT) {
+                return Optional.empty();
+            }
+            ByteBuffer entry = entryAt(location);
+            long writtenAt = entry.getLong(entry.position() + 4);
+            if (clock.millis() - writtenAt < expireAfterWriteMillis) {
+                entry.position(entry.position() + ENTRY_HEADER_BYTES);
+                return Optional.of(WishlistCodec.decode(entry));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // expired
+        lock.writeLock().lock();
+        try {
+            if (index.get(wishlistId) == location) {
+                removeEntry(wishlistId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Caches a Wishlist that was read, unless it was saved or invalidated since the read began.
+     */
+    private void fill(Wishlist wishlist, long generationBeforeRead) {
+        byte[] encoded = WishlistCodec.encode(wishlist);
+        lock.writeLock().lock();
+        try {
+            if (generations.get(stripe(wishlist.wishlistId())) == generationBeforeRead) {
+                append(wishlist.wishlistId(), encoded);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Caches a Wishlist that was just saved.
+     */
+    private void put(Wishlist wishlist) {
+        byte[] encoded = WishlistCodec.encode(wishlist);
+        lock.writeLock().lock();
+        try {
+            // reads that began before the save may have seen the old Wishlist
+            generations.incrementAndGet(stripe(wishlist.wishlistId()));
+            append(wishlist.wishlistId(), encoded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void invalidate(UUID wishlistId) {
+        lock.writeLock().lock();
+        try {
+            generations.incrementAndGet(stripe(wishlistId));
+            removeEntry(wishlistId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // callers must hold the write lock
+    private void append(UUID wishlistId, byte[] encoded) {
+        int entrySize = ENTRY_HEADER_BYTES + encoded.length;
+        removeEntry(wishlistId);
+        if (entrySize > slabSize) {
+            return; // too large to cache
+        }
+        if (writeOffset + entrySize > slabSize) {
+            advanceSlab();
+        }
+
+        ByteBuffer slab = slabs[currentSlab];
+        if (slab == null) {
+            slab = ByteBuffer.allocateDirect(slabSize);
+            slabs[currentSlab] = slab;
+        }
+        ByteBuffer entry = slab.duplicate();
+        entry.position(writeOffset);
+        entry.putInt(encoded.length);
+        entry.putLong(clock.millis());
+        entry.put(encoded);
+
+        index.put(wishlistId, ((long) currentSlab << 32) | writeOffset);
+        liveBytes += entrySize;
+        writeOffset += entrySize;
+        slabEnds[currentSlab] = writeOffset;
+    }
+
+    // callers must hold the write lock
+    private void removeEntry(UUID wishlistId) {
+        long location = index.remove(wishlistId);
+        if (location != OffHeapIndex.ABSENT) {
+            liveBytes -= ENTRY_HEADER_BYTES + entryAt(location).getInt();
+        }
+    }
+
+    // callers must hold the write lock
+    private void advanceSlab() {
+        currentSlab = (currentSlab + 1) % slabs.length;
+        writeOffset = 0;
+
+        // every entry starts with its encoded Wishlist's id; evict those the index still points at
+        ByteBuffer slab = slabs[currentSlab];
+        for (int offset = 0; offset < slabEnds[currentSlab]; offset += ENTRY_HEADER_BYTES + slab.getInt(offset)) {
+            UUID wishlistId = new UUID(slab.getLong(offset + ENTRY_HEADER_BYTES),
+                    slab.getLong(offset + ENTRY_HEADER_BYTES + 8));
+            if (index.get(wishlistId) == (((long) currentSlab << 32) | offset)) {
+                removeEntry(wishlistId);
+                evictions.increment();
+            }
+        }
+        slabEnds[currentSlab] = 0;
+    }
+
+    // returns a view of the slab positioned at the start of the entry
+    private ByteBuffer entryAt(long location) {
+        ByteBuffer entry = slabs[(int) (location >>> 32)].duplicate();
+        entry.position((int) location);
+        return entry;
+    }
+
+    private static int stripe(UUID wishlistId) {
+        return wishlistId.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * A point-in-time view of the cache's statistics.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long allocatedBytes;
+        private final long liveBytes;
+
+        private Stats(long hits, long misses, long evictions, int entries, long allocatedBytes, long liveBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.allocatedBytes = allocatedBytes;
+            this.liveBytes = liveBytes;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * @return the number of entries dropped to make room for new ones
+         */
+        public long evictions() {
+            return evictions;
+        }
+
+        public int entries() {
+            return entries;
+        }
+
+        /**
+         * @return the off-heap memory reserved by the cache's slabs and index
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return the part of the allocated memory held by current entries
+         */
+        public long liveBytes() {
+            return liveBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[hits=" + hits + " misses=" + misses + " hitRate=" + hitRate() + " evictions=" + evictions
+                    + " entries=" + entries + " allocatedBytes=" + allocatedBytes + " liveBytes=" + liveBytes + "]";
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.alexgraham.wishlist.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * A hash table from wishlist id to a long, kept in a direct ByteBuffer so that it adds nothing
+ * for the garbage collector to trace, however many ids it holds.
+ *
+ * Open addressing with linear probing. Each slot is the id's two longs and the value plus one,
+ * so that an all-zero slot (as allocated) is empty. Removal shifts later entries of the probe run
+ * back instead of leaving tombstones, so lookups never slow down as entries come and go. The
+ * table doubles when it is half full.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+final class OffHeapIndex {
+    static final long ABSENT = -1;
+
+    private static final int SLOT_BYTES = 8 + 8 + 8; // id msb, id lsb, value + 1
+    private static final int MAX_SLOTS = Integer.MAX_VALUE / SLOT_BYTES;
+
+    private ByteBuffer slots;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expectedEntries how many entries to size the table for before it first grows
+     */
+    OffHeapIndex(int expectedEntries) {
+        int capacity = 16;
+        while (capacity < expectedEntries * 2L && capacity < MAX_SLOTS / 2) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the off-heap memory the table occupies
+     */
+    long allocatedBytes() {
+        return slots.capacity();
+    }
+
+    /**
+     * @return the value for the id, or ABSENT
+     */
+    long get(UUID id) {
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return slot < 0 ? ABSENT : value(slot);
+    }
+
+    /**
+     * @param value a non-negative value
+     */
+    void put(UUID id, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value=" + value);
+        }
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int slot = find(msb, lsb);
+        if (slot >= 0) {
+            slots.putLong(offset(slot) + 16, value + 1);
+            return;
+        }
+
+        if (size + 1 > (mask + 1) / 2) {
+            grow();
+        }
+        insert(msb, lsb, value + 1);
+        size++;
+    }
+
+    /**
+     * @return the value the id had, or ABSENT
+     */
+    long remove(UUID id) {
+        int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            return ABSENT;
+        }
+        long value = value(slot);
+
+        // shift back any later entry of the probe run whose home is not between the hole and it
+        int hole = slot;
+        for (int next = (hole + 1) & mask; !isEmpty(next); next = (next + 1) & mask) {
+            int home = home(slots.getLong(offset(next)), slots.getLong(offset(next) + 8));
+            boolean homeAfterHole = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!homeAfterHole) {
+                copy(next, hole);
+                hole = next;
+            }
+        }
+        clear(hole);
+        size--;
+        return value;
+    }
+
+    // returns the slot holding the id, or -1
+    private int find(long msb, long lsb) {
+        for (int slot = home(msb, lsb); !isEmpty(slot); slot = (slot + 1) & mask) {
+            int offset = offset(slot);
+            if (slots.getLong(offset) == msb && slots.getLong(offset + 8) == lsb) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long msb, long lsb, long storedValue) {
+        int slot = home(msb, lsb);
+        while (!isEmpty(slot)) {
+            slot = (slot + 1) & mask;
+        }
+        int offset = offset(slot);
+        slots.putLong(offset, msb);
+        slots.putLong(offset + 8, lsb);
+        slots.putLong(offset + 16, storedValue);
+    }
+
+    private void grow() {
+        int capacity = mask + 1;
+        if (capacity * 2L > MAX_SLOTS) {
+            throw new IllegalStateException("index is full, size=" + size);
+        }
+        ByteBuffer old = slots;
+        allocate(capacity * 2);
+        for (int offset = 0; offset < old.capacity(); offset += SLOT_BYTES) {
+            long storedValue = old.getLong(offset + 16);
+            if (storedValue != 0) {
+                insert(old.getLong(offset), old.getLong(offset + 8), storedValue);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        mask = capacity - 1;
+    }
+
+    private int home(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L; // ids may not be random, e.g. name-based
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private boolean isEmpty(int slot) {
+        return slots.getLong(offset(slot) + 16) == 0;
+    }
+
+    private long value(int slot) {
+        return slots.getLong(offset(slot) + 16) - 1;
+    }
+
+    private void copy(int from, int to) {
+        int fromOffset = offset(from);
+        int toOffset = offset(to);
+        slots.putLong(toOffset, slots.getLong(fromOffset));
+        slots.putLong(toOffset + 8, slots.getLong(fromOffset + 8));
+        slots.putLong(toOffset + 16, slots.getLong(fromOffset + 16));
+    }
+
+    private void clear(int slot) {
+        int offset = offset(slot);
+        slots.putLong(offset, 0);
+        slots.putLong(offset + 8, 0);
+        slots.putLong(offset + 16, 0);
+    }
+
+    private static int offset(int slot) {
+        return slot * SLOT_BYTES;
+    }
+}
@@ -0,0 +1,35 @@
+package org.alexgraham.wishlist.persistence;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+
+/**
+ * Backfills the itemCount and lastModified attributes onto records saved before they existed.
+ *
+ * Until a record has lastModified it is missing from the owner recency index, so run this (with a
+ * MigrationRunner) once after deploying that index. The real modification time of an old record is
+ * unknown; it is recorded as WishlistStorable.UNKNOWN_LAST_MODIFIED, so that old records list as
+ * the least recent (with a null lastModified) rather than ahead of Wishlists really modified since.
+ */
+public class SummaryAttributesBackfill implements Migration {
+
+    @Override
+    public boolean needsMigration(Map<String, AttributeValue> item) {
+        return !item.containsKey("lastModified") || !item.containsKey("itemCount");
+    }
+
+    @Override
+    public Map<String, AttributeValue> migrate(Map<String, AttributeValue> item) {
+        if (!item.containsKey("itemCount")) {
+            AttributeValue items = item.get("items");
+            int itemCount = items != null && items.hasL() ? items.l().size() : 0;
+            item.put("itemCount", AttributeValue.builder().n(Integer.toString(itemCount)).build());
+        }
+        if (!item.containsKey("lastModified")) {
+            String unknown = Long.toString(WishlistStorable.UNKNOWN_LAST_MODIFIED);
+            item.put("lastModified", AttributeValue.builder().n(unknown).build());
+        }
+        return item;
+    }
+}
@@ -0,0 +1,165 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.Wishlist;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A compact binary encoding of a Wishlist.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   wishlistId   16 bytes
+ *   ownerId      16 bytes
+ *   version      long
+ *   name         int length, then UTF-8 bytes (length -1 for null)
+ *   lastModified long epoch millis (Long.MIN_VALUE for null)
+ *   knownCount   int, the denormalized item count (-1 for null)
+ *   itemCount    int (-1 when the Wishlist was loaded without its Items)
+ *   items        per item: 16 byte itemId, then details as int length + UTF-8 bytes
+ * </pre>
+ */
+final class WishlistCodec {
+    // where the version sits in an encoded Wishlist, so it can be read without decoding the rest
+    static final int VERSION_OFFSET = 16 + 16;
+
+    private WishlistCodec() {
+    }
+
+    static byte[] encode(Wishlist wishlist) {
+        byte[] name = utf8(wishlist.name());
+        List<Item> items = wishlist.items();
+
+        List<byte[]> details = new ArrayList<>();
+        int size = 16 + 16 + 8 + 4 + length(name) + 8 + 4 + 4;
+        if (items != null) {
+            for (Item item : items) {
+                byte[] itemDetails = utf8(item.details());
+                details.add(itemDetails);
+                size += 16 + 4 + length(itemDetails);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putUuid(buffer, wishlist.wishlistId());
+        putUuid(buffer, wishlist.ownerId());
+        buffer.putLong(wishlist.version());
+        putBytes(buffer, name);
+        buffer.putLong(wishlist.lastModified() == null ? Long.MIN_VALUE : wishlist.lastModified().toEpochMilli());
+        buffer.putInt(wishlist.itemCount() == null ? -1 : wishlist.itemCount());
+        if (items == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                putUuid(buffer, items.get(i).itemId());
+                putBytes(buffer, details.get(i));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a Wishlist starting at the buffer's position, advancing the position past it.
+     */
+    static Wishlist decode(ByteBuffer buffer) {
+        UUID wishlistId = getUuid(buffer);
+        UUID ownerId = getUuid(buffer);
+        long version = buffer.getLong();
+        String name = getString(buffer);
+        long lastModifiedMillis = buffer.getLong();
+        Instant lastModified = lastModifiedMillis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(lastModifiedMillis);
+        int knownCount = buffer.getInt();
+
+        List<Item> items = null;
+        int itemCount = buffer.getInt();
+        if (itemCount >= 0) {
+            items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                UUID itemId = getUuid(buffer);
+                items.add(Item.rehydrate(itemId, getString(buffer)));
+            }
+        }
+
+        return Wishlist.rehydrate(wishlistId, ownerId, name, items, knownCount < 0 ? null : knownCount, lastModified,
+                version);
+    }
+
+    /**
+     * Decodes a window of the Items of a Wishlist starting at the buffer's position, skipping over
+     * the other Items without decoding them.
+     *
+     * @return the Items, or null if the Wishlist was encoded without its Items
+     */
+    static List<Item> decodeItems(ByteBuffer buffer, int offset, int limit) {
+        buffer.position(buffer.position() + VERSION_OFFSET + 8);
+        skipBytes(buffer); // name
+        buffer.position(buffer.position() + 8 + 4); // lastModified, knownCount
+
+        int itemCount = buffer.getInt();
+        if (itemCount < 0) {
+            return null;
+        }
+        int from = Math.min(offset, itemCount);
+        int to = Math.min(from + limit, itemCount);
+        for (int i = 0; i < from; i++) {
+            buffer.position(buffer.position() + 16);
+            skipBytes(buffer);
+        }
+        List<Item> items = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            UUID itemId = getUuid(buffer);
+            items.add(Item.rehydrate(itemId, getString(buffer)));
+        }
+        return items;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static void skipBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
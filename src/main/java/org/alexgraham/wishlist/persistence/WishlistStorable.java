@@ -5,18 +5,27 @@ import org.alexgraham.wishlist.domain.Wishlist;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 @DynamoDbBean
 public class WishlistStorable {
+    // stored for a Wishlist whose lastModified was never recorded, so that it sorts as the least
+    // recently modified in the owner recency index; read back as null
+    static final long UNKNOWN_LAST_MODIFIED = 0;
 
     private String id;
     private String ownerId;
     private String name;
     private List<ItemStorable> items;
+    // denormalized from items, so listings from the owner index can show them
+    private Integer itemCount;
+    private Long lastModified; // epoch millis
+    private Long version;
 
     public WishlistStorable() {
         // default empty constructor
@@ -29,6 +38,14 @@ public class WishlistStorable {
         this.items = items;
     }
 
+    public WishlistStorable(String id, String ownerId, String name, List<ItemStorable> items, Integer itemCount,
+                            Long lastModified, Long version) {
+        this(id, ownerId, name, items);
+        this.itemCount = itemCount;
+        this.lastModified = lastModified;
+        this.version = version;
+    }
+
     static WishlistStorable fromWishlist(Wishlist wishlist) {
         List<ItemStorable> items = wishlist.items()
                 .stream()
@@ -39,7 +56,10 @@ public class WishlistStorable {
                 wishlist.wishlistId().toString(),
                 wishlist.ownerId().toString(),
                 wishlist.name(),
-                items);
+                items,
+                items.size(),
+                wishlist.lastModified() == null ? UNKNOWN_LAST_MODIFIED : wishlist.lastModified().toEpochMilli(),
+                wishlist.version());
     }
 
     public Wishlist toWishlist() {
@@ -54,7 +74,11 @@ public class WishlistStorable {
                 UUID.fromString(id),
                 UUID.fromString(ownerId),
                 name,
-                wishlistItems);
+                wishlistItems,
+                itemCount,
+                lastModified == null || lastModified == UNKNOWN_LAST_MODIFIED
+                        ? null : Instant.ofEpochMilli(lastModified),
+                version == null ? 0 : version);
     }
 
     @DynamoDbPartitionKey
@@ -65,7 +89,9 @@ public class WishlistStorable {
         this.id = id;
     }
 
-    @DynamoDbSecondaryPartitionKey(indexNames = DynamoRepository.GSI_WISHLIST_BY_OWNERS)
+    @DynamoDbSecondaryPartitionKey(indexNames = {
+            DynamoRepository.GSI_WISHLIST_BY_OWNERS,
+            DynamoRepository.GSI_WISHLIST_BY_OWNER_RECENCY})
     public String getOwnerId() {
         return ownerId;
     }
@@ -86,4 +112,26 @@ public class WishlistStorable {
     public void setItems(List<ItemStorable> items) {
         this.items = items;
     }
+
+    public Integer getItemCount() {
+        return itemCount;
+    }
+    public void setItemCount(Integer itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    @DynamoDbSecondarySortKey(indexNames = DynamoRepository.GSI_WISHLIST_BY_OWNER_RECENCY)
+    public Long getLastModified() {
+        return lastModified;
+    }
+    public void setLastModified(Long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -1,21 +1,43 @@
 package org.alexgraham.wishlist;
 
+import org.alexgraham.wishlist.domain.AdmissionController;
+import org.alexgraham.wishlist.domain.AdmissionRejectedException;
+import org.alexgraham.wishlist.domain.Deadline;
+import org.alexgraham.wishlist.domain.DeadlineExceededException;
 import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
 import org.alexgraham.wishlist.domain.Wishlist;
 import org.alexgraham.wishlist.domain.WishlistService;
+import org.alexgraham.wishlist.domain.WishlistSession;
+import org.alexgraham.wishlist.persistence.CountingRepository;
 import org.alexgraham.wishlist.persistence.DynamoRepository;
+import org.alexgraham.wishlist.persistence.InMemoryRepository;
+import org.alexgraham.wishlist.persistence.ItemBytesInterceptor;
 import org.alexgraham.wishlist.persistence.ItemStorable;
+import org.alexgraham.wishlist.persistence.Migration;
+import org.alexgraham.wishlist.persistence.MigrationRunner;
+import org.alexgraham.wishlist.persistence.NegativeCachingRepository;
+import org.alexgraham.wishlist.persistence.OffHeapCachingRepository;
+import org.alexgraham.wishlist.persistence.RoundTripBudget;
+import org.alexgraham.wishlist.persistence.RoundTrips;
+import org.alexgraham.wishlist.persistence.SummaryAttributesBackfill;
 import org.alexgraham.wishlist.persistence.WishlistStorable;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
@@ -24,20 +46,41 @@ import software.amazon.awssdk.enhanced.dynamodb.model.CreateTableEnhancedRequest
 import software.amazon.awssdk.enhanced.dynamodb.model.EnhancedGlobalSecondaryIndex;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.Projection;
 import software.amazon.awssdk.services.dynamodb.model.ProjectionType;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.Select;
 
 import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -59,6 +102,7 @@ class IntegrationTest {
     static final GenericContainer dynamodb = new GenericContainer("amazon/dynamodb-local:latest")
             .withExposedPorts(DYNAMO_PORT);
 
+    static DynamoDbClient dynamoDbClient;
     static DynamoDbEnhancedClient dynamoDbEnhancedClient;
     static DynamoDbTable<WishlistStorable> wishlistStorableDynamoDbTable;
 
@@ -66,16 +110,7 @@ class IntegrationTest {
 
     @BeforeAll
     static void setupDynamoClients() {
-        Integer mappedPort = dynamodb.getMappedPort(DYNAMO_PORT);
-
-        DynamoDbClient dynamoDbClient = DynamoDbClient.builder()
-                .credentialsProvider(StaticCredentialsProvider.create(
-                        AwsBasicCredentials.create("fake", "fakeSecret"
-                        )
-                ))
-                .region(Region.US_WEST_2)
-                .endpointOverride(URI.create("http://localhost:" + mappedPort))
-                .build();
+        dynamoDbClient = newDynamoDbClient(ClientOverrideConfiguration.builder().build());
 
         dynamoDbEnhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
@@ -90,7 +125,15 @@ class IntegrationTest {
                         .projection(
                                 Projection.builder()
                                         .projectionType(ProjectionType.INCLUDE)
-                                        .nonKeyAttributes("name")
+                                        .nonKeyAttributes("name", "itemCount", "lastModified", "version")
+                                        .build())
+                        .build(),
+                        EnhancedGlobalSecondaryIndex.builder()
+                        .indexName(DynamoRepository.GSI_WISHLIST_BY_OWNER_RECENCY)
+                        .projection(
+                                Projection.builder()
+                                        .projectionType(ProjectionType.INCLUDE)
+                                        .nonKeyAttributes("name", "itemCount", "version")
                                         .build())
                         .build()
                 )
@@ -99,7 +142,7 @@ class IntegrationTest {
 
     @BeforeEach
     void setup() {
-        this.wishlistService = new WishlistService(new DynamoRepository(dynamoDbEnhancedClient, TABLE_NAME));
+        this.wishlistService = new WishlistService(new DynamoRepository(dynamoDbClient, TABLE_NAME));
     }
 
     @Nested
@@ -158,6 +201,109 @@ class IntegrationTest {
             assertThrows(IllegalArgumentException.class,
                     () -> wishlistService.addItemToWishlist(wishlistId, null));
         }
+
+        @Test
+        void concurrentAdds_areAllKept() throws Exception {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            List<Item> added = new ArrayList<>();
+            try {
+                List<Future<List<Item>>> writers = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    writers.add(executor.submit(() -> List.of(
+                            wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A"),
+                            wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-B"))));
+                }
+                for (Future<List<Item>> writer : writers) {
+                    added.addAll(writer.get());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(getWishlistItemIds(wishlistId), containsInAnyOrder(extractItemIds(added).toArray()));
+            assertThat(getWishlistStorable(wishlistId).getVersion(), is(4L));
+        }
+
+        @Test
+        void staleWishlist_isNotSaved() {
+            DynamoRepository repository = new DynamoRepository(dynamoDbClient, TABLE_NAME);
+            UUID wishlistId = wishlistService.createWishlist(UUID.randomUUID(), "test-name").wishlistId();
+            Wishlist first = repository.getById(wishlistId);
+            Wishlist second = repository.getById(wishlistId);
+
+            first.addItem(Item.create("test-wishlist-item-A"));
+            repository.save(first);
+            second.addItem(Item.create("test-wishlist-item-B"));
+
+            assertThrows(ConcurrentModificationException.class, () -> repository.save(second));
+            assertThat(getWishlistItemIds(wishlistId), contains(first.items().get(0).itemId()));
+        }
+    }
+
+    @Nested
+    @DisplayName("AddItemsToWishlist")
+    class AddItemsToWishlist {
+
+        @Test
+        void validItems_areAppendedInOrder() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            Item existing = wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+
+            List<Item> added = wishlistService.addItemsToWishlist(wishlistId,
+                    List.of("test-wishlist-item-B", "test-wishlist-item-C"));
+
+            assertThat(added, hasSize(2));
+            assertThat(getWishlistItemIds(wishlistId),
+                    contains(existing.itemId(), added.get(0).itemId(), added.get(1).itemId()));
+        }
+
+        @Test
+        void emptyList_returnsEmptyList() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+            assertThat(wishlistService.addItemsToWishlist(wishlistId, List.of()), is(empty()));
+        }
+
+        @Test
+        void whenAnyItemIsNotValid_throwsIllegalArgumentException_andAddsNone() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> wishlistService.addItemsToWishlist(wishlistId, List.of("test-wishlist-item-A", " ")));
+            assertThat(getWishlistItemIds(wishlistId), is(empty()));
+        }
+
+        @Test
+        void whenWishlistDoesNotExist_throwsMissingResourceException() {
+            assertThrows(MissingResourceException.class,
+                    () -> wishlistService.addItemsToWishlist(UUID.randomUUID(), List.of("foo")));
+        }
+
+        @Test
+        void emptyList_whenWishlistDoesNotExist_throwsMissingResourceException() {
+            assertThrows(MissingResourceException.class,
+                    () -> wishlistService.addItemsToWishlist(UUID.randomUUID(), List.of()));
+        }
+
+        @Test
+        void tooManyItems_throwsIllegalArgumentException_andAddsNone() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            List<String> itemDetails = new ArrayList<>();
+            for (int i = 0; i <= WishlistService.MAX_ITEMS_PER_BATCH; i++) {
+                itemDetails.add("test-wishlist-item-" + i);
+            }
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> wishlistService.addItemsToWishlist(wishlistId, itemDetails));
+            assertThat(getWishlistItemIds(wishlistId), is(empty()));
+        }
     }
 
     @Nested
@@ -222,6 +368,523 @@ class IntegrationTest {
 
             assertThrows(MissingResourceException.class, () -> wishlistService.getWishlistById(wishlistId));
         }
+
+        @Test
+        void stronglyConsistentRead_seesLatestWrite() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            Item item = wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+
+            Wishlist wishlist = wishlistService.getWishlistById(wishlistId, ReadConsistency.STRONG);
+
+            assertThat(extractItemIds(wishlist.items()), contains(item.itemId()));
+        }
+
+        @Test
+        void session_readsItsOwnWrites() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            WishlistSession session = wishlistService.openSession();
+
+            Item itemA = session.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+            Item itemB = session.addItemToWishlist(wishlistId, "test-wishlist-item-B");
+            session.reorderItemInWishlist(wishlistId, itemB.itemId(), 0);
+
+            Wishlist wishlist = session.getWishlistById(wishlistId);
+
+            assertThat(extractItemIds(wishlist.items()), contains(itemB.itemId(), itemA.itemId()));
+        }
+
+        @Test
+        void session_readsItsOwnBatchAddsAndMoves() {
+            UUID owner = UUID.randomUUID();
+            UUID fromId = UUID.randomUUID();
+            UUID toId = UUID.randomUUID();
+            addWishlistInDynamo(fromId, owner, "test-name-from");
+            addWishlistInDynamo(toId, owner, "test-name-to");
+            WishlistSession session = wishlistService.openSession();
+
+            List<Item> items = session.addItemsToWishlist(fromId,
+                    List.of("test-wishlist-item-A", "test-wishlist-item-B"));
+            session.moveItem(fromId, toId, items.get(0).itemId(), 0);
+
+            assertThat(extractItemIds(session.getWishlistById(fromId).items()), contains(items.get(1).itemId()));
+            assertThat(extractItemIds(session.getWishlistById(toId).items()), contains(items.get(0).itemId()));
+        }
+
+        @Test
+        void session_readsLaterWritesByOthers() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            WishlistSession session = wishlistService.openSession();
+
+            Item itemA = session.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+            Item itemB = wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-B");
+
+            assertThat(extractItemIds(session.getWishlistById(wishlistId).items()),
+                    contains(itemA.itemId(), itemB.itemId()));
+        }
+
+        @Test
+        void session_readFromALaggingReplica_returnsItsOwnWrite() {
+            AtomicBoolean lagging = new AtomicBoolean();
+            // eventual reads come from a replica that missed every write since lagging was set
+            InMemoryRepository repo = new InMemoryRepository() {
+                private final Map<UUID, Wishlist> replica = new ConcurrentHashMap<>();
+
+                @Override
+                public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+                    if (consistency == ReadConsistency.EVENTUAL && lagging.get()) {
+                        return Optional.ofNullable(replica.get(wishlistId));
+                    }
+                    return super.findById(wishlistId, consistency);
+                }
+
+                @Override
+                public void save(Wishlist wishlist) {
+                    super.save(wishlist);
+                    if (!lagging.get()) {
+                        replica.put(wishlist.wishlistId(),
+                                super.findById(wishlist.wishlistId(), ReadConsistency.STRONG).get());
+                    }
+                }
+            };
+            wishlistService = new WishlistService(repo);
+            UUID wishlistId = wishlistService.createWishlist(UUID.randomUUID(), "test-name").wishlistId();
+            WishlistSession session = wishlistService.openSession();
+            lagging.set(true);
+
+            Item item = session.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+
+            assertThat(extractItemIds(session.getWishlistById(wishlistId).items()), contains(item.itemId()));
+            assertThat(wishlistService.getWishlistById(wishlistId).items(), is(empty())); // what the replica has
+        }
+
+        @Test
+        void session_missingWishlist_throwsMissingResourceException() {
+            WishlistSession session = wishlistService.openSession();
+
+            assertThrows(MissingResourceException.class, () -> session.getWishlistById(UUID.randomUUID()));
+        }
+
+        @Test
+        void withinDeadline_success() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+            Wishlist wishlist = wishlistService.getWishlistById(wishlistId, Deadline.after(Duration.ofSeconds(30)));
+
+            assertThat(wishlist.wishlistId(), is(wishlistId));
+        }
+
+        @Test
+        void expiredDeadline_throwsDeadlineExceededException() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+            assertThrows(DeadlineExceededException.class,
+                    () -> wishlistService.getWishlistById(wishlistId, Deadline.after(Duration.ZERO)));
+        }
+    }
+
+    @Nested
+    @DisplayName("GetWishlistIfChanged")
+    class GetWishlistIfChanged {
+
+        @BeforeEach
+        void setup() {
+            wishlistService = new WishlistService(new DynamoRepository(dynamoDbClient, TABLE_NAME));
+        }
+
+        @Test
+        void unchangedWishlist_returnsEmpty() {
+            Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+            wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+            long version = wishlistService.getWishlistById(wishlist.wishlistId(), ReadConsistency.STRONG).version();
+
+            Optional<Wishlist> result = wishlistService.getWishlistIfChanged(wishlist.wishlistId(), version);
+
+            assertThat(result.isPresent(), is(false));
+        }
+
+        @Test
+        void changedWishlist_returnsWishlist() {
+            Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+            Item item = wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+
+            Optional<Wishlist> result = wishlistService.getWishlistIfChanged(wishlist.wishlistId(), wishlist.version());
+
+            assertThat(result.isPresent(), is(true));
+            assertThat(extractItemIds(result.get().items()), contains(item.itemId()));
+            assertThat(result.get().version(), is(wishlist.version() + 1));
+        }
+
+        @Test
+        void wishlistSavedWithoutVersion_isAtVersionZero() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+            assertThat(wishlistService.getWishlistIfChanged(wishlistId, 0).isPresent(), is(false));
+        }
+
+        @Test
+        void missingWishlist_throwsMissingResourceException() {
+            assertThrows(MissingResourceException.class,
+                    () -> wishlistService.getWishlistIfChanged(UUID.randomUUID(), 0));
+        }
+
+        @Test
+        void laggingReplica_neverReturnsAnOlderVersion() {
+            AtomicReference<Wishlist> lagging = new AtomicReference<>();
+            // eventual reads of the whole Wishlist come from a replica that holds the lagging copy
+            InMemoryRepository repo = new InMemoryRepository() {
+                @Override
+                public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+                    if (consistency == ReadConsistency.EVENTUAL && lagging.get() != null) {
+                        return Optional.of(lagging.get());
+                    }
+                    return super.findById(wishlistId, consistency);
+                }
+            };
+            wishlistService = new WishlistService(repo);
+            Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+            wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+            Wishlist known = repo.findById(wishlist.wishlistId(), ReadConsistency.STRONG).get();
+            lagging.set(wishlist);
+            wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-B");
+
+            Optional<Wishlist> result = wishlistService.getWishlistIfChanged(wishlist.wishlistId(), known.version());
+
+            assertThat(result.get().version(), is(known.version() + 1));
+            assertThat(result.get().items(), hasSize(2));
+            assertThat(wishlistService.getWishlistIfChanged(wishlist.wishlistId(), result.get().version() + 1)
+                    .isPresent(), is(false));
+        }
+    }
+
+    @Nested
+    @DisplayName("GetWishlistItems")
+    class GetWishlistItems {
+
+        private UUID wishlistId;
+        private List<Item> items;
+
+        @BeforeEach
+        void setup() {
+            wishlistService = new WishlistService(new DynamoRepository(dynamoDbClient, TABLE_NAME));
+            wishlistId = wishlistService.createWishlist(UUID.randomUUID(), "test-name").wishlistId();
+            items = wishlistService.addItemsToWishlist(wishlistId,
+                    List.of("test-item-A", "test-item-B", "test-item-C", "test-item-D", "test-item-E"));
+        }
+
+        @Test
+        void firstWindow_returnsFirstItems() {
+            List<Item> window = wishlistService.getWishlistItems(wishlistId, 0, 2);
+
+            assertThat(extractItemIds(window), contains(items.get(0).itemId(), items.get(1).itemId()));
+            assertThat(window.get(0).details(), is("test-item-A"));
+        }
+
+        @Test
+        void windowOverlappingTheEnd_returnsRemainingItems() {
+            List<Item> window = wishlistService.getWishlistItems(wishlistId, 3, 10);
+
+            assertThat(extractItemIds(window), contains(items.get(3).itemId(), items.get(4).itemId()));
+        }
+
+        @Test
+        void windowPastTheEnd_returnsEmptyList() {
+            assertThat(wishlistService.getWishlistItems(wishlistId, 5, 10), is(empty()));
+        }
+
+        @Test
+        void missingWishlist_throwsMissingResourceException() {
+            assertThrows(MissingResourceException.class,
+                    () -> wishlistService.getWishlistItems(UUID.randomUUID(), 0, 10));
+        }
+
+        @Test
+        void limitAboveMaximum_throwsIllegalArgumentException() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> wishlistService.getWishlistItems(wishlistId, 0, WishlistService.MAX_ITEMS_WINDOW + 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("AdmissionControl")
+    class AdmissionControl {
+
+        private AdmissionController admission;
+        private CountingRepository countingRepository;
+        private ExecutorService executor;
+
+        @BeforeEach
+        void setup() {
+            // effectively no refill during a test, so each key gets exactly its burst
+            admission = new AdmissionController(0.001, 2, 0.001, 3, 100);
+            countingRepository = new CountingRepository(new DynamoRepository(dynamoDbClient, TABLE_NAME));
+            executor = Executors.newCachedThreadPool();
+            wishlistService = new WishlistService(countingRepository, executor, admission);
+        }
+
+        @AfterEach
+        void teardown() {
+            executor.shutdownNow();
+        }
+
+        @Test
+        void ownerOverLimit_isRejected_andOtherOwnersAreNot() {
+            UUID owner = UUID.randomUUID();
+            wishlistService.listWishlistsByOwner(owner);
+            wishlistService.listWishlistsByOwner(owner);
+
+            AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                    () -> wishlistService.listWishlistsByOwner(owner));
+
+            assertThat(e.scope(), is(AdmissionController.Scope.OWNER));
+            assertThat(wishlistService.listWishlistsByOwner(UUID.randomUUID()), is(empty()));
+            assertThat(admission.stats().rejected(AdmissionController.Scope.OWNER), is(1L));
+        }
+
+        @Test
+        void wishlistOverLimit_isRejected() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            wishlistService.getWishlistById(wishlistId);
+            wishlistService.getWishlistById(wishlistId);
+            wishlistService.getWishlistById(wishlistId);
+
+            AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                    () -> wishlistService.getWishlistById(wishlistId));
+
+            assertThat(e.scope(), is(AdmissionController.Scope.WISHLIST));
+        }
+
+        @Test
+        void ownerOverLimit_writeIsRejectedBeforeReadingTheWishlist() {
+            Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+            wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+            AtomicReference<AdmissionRejectedException> rejected = new AtomicReference<>();
+
+            RoundTrips cost = countingRepository.measure(() -> rejected.set(assertThrows(
+                    AdmissionRejectedException.class,
+                    () -> wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-B"))));
+
+            assertThat(rejected.get().scope(), is(AdmissionController.Scope.OWNER));
+            assertThat(cost, RoundTripBudget.atMost().reads(0).writes(0));
+        }
+
+        @Test
+        void whenFull_leastRecentlyUsedBucketIsDropped() {
+            wishlistService = new WishlistService(countingRepository, executor,
+                    new AdmissionController(0.001, 1, 0.001, 1, 2));
+            UUID ownerA = UUID.randomUUID();
+            UUID ownerB = UUID.randomUUID();
+            wishlistService.listWishlistsByOwner(ownerA);
+            wishlistService.listWishlistsByOwner(ownerB);
+            assertThrows(AdmissionRejectedException.class, () -> wishlistService.listWishlistsByOwner(ownerA));
+
+            wishlistService.listWishlistsByOwner(UUID.randomUUID()); // drops ownerB, the least recently used
+
+            assertThrows(AdmissionRejectedException.class, () -> wishlistService.listWishlistsByOwner(ownerA));
+            assertThat(wishlistService.listWishlistsByOwner(ownerB), is(empty()));
+        }
+
+        @Test
+        void writeRejectedOnTheOwner_returnsTheWishlistsToken() {
+            AdmissionController admission = new AdmissionController(0.001, 1, 0.001, 2, 100);
+            wishlistService = new WishlistService(countingRepository, executor, admission);
+            // spends the owner's only token
+            Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+
+            assertThrows(AdmissionRejectedException.class,
+                    () -> wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A"));
+
+            assertThat(admission.stats().admitted(AdmissionController.Scope.WISHLIST), is(0L));
+            wishlistService.getWishlistById(wishlist.wishlistId());
+            wishlistService.getWishlistById(wishlist.wishlistId()); // the wishlist still has its whole burst
+        }
+
+        @Test
+        void stats_includeTheConfiguredLimits() {
+            AdmissionController.Stats stats = admission.stats();
+
+            assertThat(stats.ratePerSecond(AdmissionController.Scope.OWNER), is(0.001));
+            assertThat(stats.burst(AdmissionController.Scope.OWNER), is(2));
+            assertThat(stats.ratePerSecond(AdmissionController.Scope.WISHLIST), is(0.001));
+            assertThat(stats.burst(AdmissionController.Scope.WISHLIST), is(3));
+        }
+
+        @Test
+        void invalidLimits_throwIllegalArgumentException() {
+            assertThrows(IllegalArgumentException.class, () -> new AdmissionController(0, 2, 1, 3, 100));
+            assertThrows(IllegalArgumentException.class, () -> new AdmissionController(1, 2, 1, 0, 100));
+        }
+    }
+
+    @Nested
+    @DisplayName("OffHeapCaching")
+    class OffHeapCaching {
+
+        private OffHeapCachingRepository cachingRepository;
+
+        @BeforeEach
+        void setup() {
+            cachingRepository = new OffHeapCachingRepository(
+                    new DynamoRepository(dynamoDbClient, TABLE_NAME),
+                    1024 * 1024,
+                    64 * 1024,
+                    Duration.ofMinutes(1));
+            wishlistService = new WishlistService(cachingRepository);
+        }
+
+        @Test
+        void savedWishlist_isReadFromCache() {
+            Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+            Item item = wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+
+            Wishlist cached = wishlistService.getWishlistById(wishlist.wishlistId());
+
+            assertThat(cached.name(), is("test-name"));
+            assertThat(extractItemIds(cached.items()), contains(item.itemId()));
+            assertThat(cachingRepository.stats().hits(), is(1L));
+        }
+
+        @Test
+        void stronglyConsistentRead_bypassesCache() {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            wishlistService.getWishlistById(wishlistId);
+
+            // written behind the cache's back
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name-changed");
+
+            assertThat(wishlistService.getWishlistById(wishlistId).name(), is("test-name"));
+            assertThat(wishlistService.getWishlistById(wishlistId, ReadConsistency.STRONG).name(),
+                    is("test-name-changed"));
+        }
+    }
+
+    @Nested
+    @DisplayName("FindWishlistById")
+    class FindWishlistById {
+
+        @Test
+        void existingWishlist_returnsWishlist() {
+            UUID wishlistId = UUID.randomUUID();
+            UUID owner = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, owner, "test-name");
+
+            Optional<Wishlist> wishlist = wishlistService.findWishlistById(wishlistId);
+
+            assertThat(wishlist.isPresent(), is(true));
+            assertThat(wishlist.get().wishlistId(), is(wishlistId));
+            assertThat(wishlist.get().ownerId(), is(owner));
+        }
+
+        @Test
+        void missingWishlist_returnsEmpty() {
+            Optional<Wishlist> wishlist = wishlistService.findWishlistById(UUID.randomUUID());
+
+            assertThat(wishlist.isPresent(), is(false));
+        }
+
+        @Nested
+        @DisplayName("with negative caching")
+        class WithNegativeCaching {
+
+            @BeforeEach
+            void setup() {
+                wishlistService = new WishlistService(new NegativeCachingRepository(
+                        new DynamoRepository(dynamoDbClient, TABLE_NAME),
+                        Duration.ofMinutes(1),
+                        100));
+            }
+
+            @Test
+            void missIsCached_untilTtlExpires() {
+                UUID wishlistId = UUID.randomUUID();
+                assertThat(wishlistService.findWishlistById(wishlistId).isPresent(), is(false));
+
+                // written behind the cache's back, so the cached miss still applies
+                addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+
+                assertThat(wishlistService.findWishlistById(wishlistId).isPresent(), is(false));
+            }
+
+            @Test
+            void wishlistCreatedThroughService_isVisibleImmediately() {
+                Wishlist wishlist = wishlistService.createWishlist(UUID.randomUUID(), "test-name");
+
+                assertThat(wishlistService.findWishlistById(wishlist.wishlistId()).isPresent(), is(true));
+            }
+
+            @Test
+            void missingWishlist_getStillThrows() {
+                UUID wishlistId = UUID.randomUUID();
+                wishlistService.findWishlistById(wishlistId);
+
+                assertThrows(MissingResourceException.class, () -> wishlistService.getWishlistById(wishlistId));
+            }
+
+            @Test
+            void saveDuringAMissedRead_isVisibleAfterIt() {
+                DynamoRepository dynamoRepository = new DynamoRepository(dynamoDbClient, TABLE_NAME);
+                AtomicReference<NegativeCachingRepository> cache = new AtomicReference<>();
+                Wishlist wishlist = Wishlist.rehydrate(UUID.randomUUID(), UUID.randomUUID(), "test-name", new ArrayList<>());
+                // saves the Wishlist through the cache after reading it as missing, but before the miss is cached
+                Repository racingRepository = new Repository() {
+                    @Override
+                    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+                        Optional<Wishlist> result = dynamoRepository.findById(wishlistId, consistency);
+                        if (result.isEmpty()) {
+                            cache.get().save(wishlist);
+                        }
+                        return result;
+                    }
+
+                    @Override
+                    public List<Wishlist> queryByOwner(UUID ownerId) {
+                        return dynamoRepository.queryByOwner(ownerId);
+                    }
+
+                    @Override
+                    public void save(Wishlist wishlist) {
+                        dynamoRepository.save(wishlist);
+                    }
+
+                    @Override
+                    public void commit(UnitOfWork unitOfWork) {
+                        dynamoRepository.commit(unitOfWork);
+                    }
+                };
+                cache.set(new NegativeCachingRepository(racingRepository, Duration.ofMinutes(1), 100));
+
+                assertThat(cache.get().findById(wishlist.wishlistId()).isPresent(), is(false));
+
+                assertThat(cache.get().size(), is(0));
+                assertThat(cache.get().findById(wishlist.wishlistId()).isPresent(), is(true));
+            }
+
+            @Test
+            void whenFull_oldestMissIsEvicted() {
+                NegativeCachingRepository cache = new NegativeCachingRepository(
+                        new DynamoRepository(dynamoDbClient, TABLE_NAME), Duration.ofMinutes(1), 2);
+                UUID oldest = UUID.randomUUID();
+                UUID newest = UUID.randomUUID();
+                cache.findById(oldest);
+                cache.findById(UUID.randomUUID());
+                cache.findById(newest);
+
+                // written behind the cache's back, so only an evicted miss lets them be seen
+                addWishlistInDynamo(oldest, UUID.randomUUID(), "test-name");
+                addWishlistInDynamo(newest, UUID.randomUUID(), "test-name");
+
+                assertThat(cache.size(), is(2));
+                assertThat(cache.findById(oldest).isPresent(), is(true));
+                assertThat(cache.findById(newest).isPresent(), is(false));
+            }
+        }
     }
 
     @Nested
@@ -293,6 +956,89 @@ class IntegrationTest {
             assertThat(results, hasSize(1));
             assertThat(results.get(0).items(), is(nullValue()));
         }
+
+        @Test
+        void whenAWishlistHasItems_itemCountLastModifiedAndVersionAreReturned() {
+            Wishlist wishlist = wishlistService.createWishlist(ownerA, "test-name-A");
+            wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+            wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-B");
+
+            List<Wishlist> results = wishlistService.listWishlistsByOwner(ownerA);
+
+            assertThat(results, hasSize(1));
+            assertThat(results.get(0).itemCount(), is(2));
+            assertThat(results.get(0).lastModified(), is(greaterThanOrEqualTo(wishlist.lastModified())));
+            assertThat(results.get(0).version(), is(3L));
+        }
+    }
+
+    @Nested
+    @DisplayName("ListRecentWishlistsByOwner")
+    class ListRecentWishlistsByOwner {
+
+        private UUID owner;
+        private Wishlist oldest;
+        private Wishlist middle;
+        private Wishlist newest;
+
+        @BeforeEach
+        void setup() throws InterruptedException {
+            owner = UUID.randomUUID();
+            oldest = wishlistService.createWishlist(owner, "test-name-A");
+            Thread.sleep(5); // lastModified has millisecond resolution
+            middle = wishlistService.createWishlist(owner, "test-name-B");
+            Thread.sleep(5);
+            newest = wishlistService.createWishlist(owner, "test-name-C");
+        }
+
+        @Test
+        void newestFirst_returnsMostRecentWishlists() {
+            List<Wishlist> results = wishlistService.listWishlistsByOwner(owner, 2, ListOrder.NEWEST_FIRST);
+
+            assertThat(extractWishlistIds(results), contains(newest.wishlistId(), middle.wishlistId()));
+            assertThat(results.get(0).name(), is("test-name-C"));
+            assertThat(results.get(0).items(), is(nullValue()));
+        }
+
+        @Test
+        void oldestFirst_returnsLeastRecentWishlists() {
+            List<Wishlist> results = wishlistService.listWishlistsByOwner(owner, 1, ListOrder.OLDEST_FIRST);
+
+            assertThat(extractWishlistIds(results), contains(oldest.wishlistId()));
+        }
+
+        @Test
+        void modifiedWishlist_movesToTheFront() {
+            wishlistService.addItemToWishlist(oldest.wishlistId(), "test-wishlist-item-A");
+
+            List<Wishlist> results = wishlistService.listWishlistsByOwner(owner, 1, ListOrder.NEWEST_FIRST);
+
+            assertThat(extractWishlistIds(results), contains(oldest.wishlistId()));
+            assertThat(results.get(0).itemCount(), is(1));
+            assertThat(results.get(0).version(), is(2L));
+        }
+
+        @Test
+        void wishlistSavedWithoutLastModified_isListedAfterBackfill() throws InterruptedException {
+            UUID legacyWishlistId = UUID.randomUUID();
+            addWishlistInDynamo(legacyWishlistId, owner, "test-name-legacy");
+            assertThat(wishlistService.listWishlistsByOwner(owner, 10, ListOrder.NEWEST_FIRST), hasSize(3));
+
+            new MigrationRunner(dynamoDbClient, TABLE_NAME, new SummaryAttributesBackfill(), 2, 1000, 1000, null).run();
+
+            assertThat(extractWishlistIds(wishlistService.listWishlistsByOwner(owner, 10, ListOrder.NEWEST_FIRST)),
+                    contains(newest.wishlistId(), middle.wishlistId(), oldest.wishlistId(), legacyWishlistId));
+            List<Wishlist> results = wishlistService.listWishlistsByOwner(owner, 1, ListOrder.OLDEST_FIRST);
+            assertThat(extractWishlistIds(results), contains(legacyWishlistId));
+            assertThat(results.get(0).itemCount(), is(0));
+            assertThat(results.get(0).lastModified(), is(nullValue()));
+        }
+
+        @Test
+        void nonPositiveLimit_throwsIllegalArgumentException() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> wishlistService.listWishlistsByOwner(owner, 0, ListOrder.NEWEST_FIRST));
+        }
     }
 
     @Nested
@@ -422,6 +1168,486 @@ class IntegrationTest {
         }
     }
 
+    @Nested
+    @DisplayName("MoveItem")
+    class MoveItem {
+
+        private UUID fromWishlistId;
+        private UUID toWishlistId;
+        private Item itemA;
+        private Item itemB;
+        private Item itemC;
+
+        @BeforeEach
+        void setup() {
+            fromWishlistId = UUID.randomUUID();
+            toWishlistId = UUID.randomUUID();
+            addWishlistInDynamo(fromWishlistId, UUID.randomUUID(), "test-name-from");
+            addWishlistInDynamo(toWishlistId, UUID.randomUUID(), "test-name-to");
+            itemA = wishlistService.addItemToWishlist(fromWishlistId, "test-wishlist-item-A");
+            itemB = wishlistService.addItemToWishlist(toWishlistId, "test-wishlist-item-B");
+            itemC = wishlistService.addItemToWishlist(toWishlistId, "test-wishlist-item-C");
+        }
+
+        @Test
+        void movesItemToIndexInTargetWishlist() {
+            wishlistService.moveItem(fromWishlistId, toWishlistId, itemA.itemId(), 1);
+
+            assertThat(getWishlistItemIds(fromWishlistId), is(empty()));
+            assertThat(getWishlistItemIds(toWishlistId), contains(itemB.itemId(), itemA.itemId(), itemC.itemId()));
+        }
+
+        @Test
+        void givenIndexGreaterThanLength_movesItemToEnd() {
+            wishlistService.moveItem(fromWishlistId, toWishlistId, itemA.itemId(), 101);
+
+            assertThat(getWishlistItemIds(toWishlistId), contains(itemB.itemId(), itemC.itemId(), itemA.itemId()));
+        }
+
+        @Test
+        void sameWishlist_reordersItem() {
+            wishlistService.moveItem(toWishlistId, toWishlistId, itemC.itemId(), 0);
+
+            assertThat(getWishlistItemIds(toWishlistId), contains(itemC.itemId(), itemB.itemId()));
+        }
+
+        @Test
+        void whenItemNotInSourceWishlist_throwsMissingResourceException_andChangesNothing() {
+            assertThrows(MissingResourceException.class, () ->
+                    wishlistService.moveItem(fromWishlistId, toWishlistId, itemB.itemId(), 0));
+
+            assertThat(getWishlistItemIds(fromWishlistId), contains(itemA.itemId()));
+            assertThat(getWishlistItemIds(toWishlistId), contains(itemB.itemId(), itemC.itemId()));
+        }
+
+        @Test
+        void whenTargetWishlistDoesNotExist_throwsMissingResourceException() {
+            assertThrows(MissingResourceException.class, () ->
+                    wishlistService.moveItem(fromWishlistId, UUID.randomUUID(), itemA.itemId(), 0));
+
+            assertThat(getWishlistItemIds(fromWishlistId), contains(itemA.itemId()));
+        }
+
+        @Test
+        void racingMoves_moveTheItemOnce() throws Exception {
+            UUID otherWishlistId = UUID.randomUUID();
+            addWishlistInDynamo(otherWishlistId, UUID.randomUUID(), "test-name-other");
+
+            int missing = 0;
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<?>> moves = List.of(
+                        executor.submit(() -> wishlistService.moveItem(fromWishlistId, toWishlistId, itemA.itemId(), 0)),
+                        executor.submit(() -> wishlistService.moveItem(fromWishlistId, otherWishlistId, itemA.itemId(), 0)));
+                for (Future<?> move : moves) {
+                    try {
+                        move.get();
+                    } catch (ExecutionException e) {
+                        assertThat(e.getCause(), is(instanceOf(MissingResourceException.class)));
+                        missing++;
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            List<UUID> targetItemIds = new ArrayList<>(getWishlistItemIds(toWishlistId));
+            targetItemIds.addAll(getWishlistItemIds(otherWishlistId));
+            assertThat(missing, is(1));
+            assertThat(getWishlistItemIds(fromWishlistId), is(empty()));
+            assertThat(targetItemIds.stream().filter(itemA.itemId()::equals).count(), is(1L));
+        }
+
+        @Test
+        void moveRacingAnAdd_keepsBothChanges() throws Exception {
+            Item itemD;
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<?> move = executor.submit(() ->
+                        wishlistService.moveItem(fromWishlistId, toWishlistId, itemA.itemId(), 0));
+                Future<Item> add = executor.submit(() ->
+                        wishlistService.addItemToWishlist(fromWishlistId, "test-wishlist-item-D"));
+                move.get();
+                itemD = add.get();
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(getWishlistItemIds(fromWishlistId), contains(itemD.itemId()));
+            assertThat(getWishlistItemIds(toWishlistId), contains(itemA.itemId(), itemB.itemId(), itemC.itemId()));
+        }
+    }
+
+    @Nested
+    @DisplayName("RoundTripBudgets")
+    class RoundTripBudgets {
+
+        private DynamoDbClient meteredClient;
+        private CountingRepository countingRepository;
+        private UUID wishlistId;
+
+        @BeforeEach
+        void setup() {
+            // bytes are measured at the client, so a read that transfers more than it returns is caught
+            ItemBytesInterceptor backendBytes = new ItemBytesInterceptor();
+            meteredClient = newDynamoDbClient(ClientOverrideConfiguration.builder()
+                    .addExecutionInterceptor(backendBytes)
+                    .build());
+            countingRepository = new CountingRepository(new DynamoRepository(meteredClient, TABLE_NAME), backendBytes);
+            wishlistService = new WishlistService(countingRepository);
+            wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+        }
+
+        @AfterEach
+        void teardown() {
+            meteredClient.close();
+        }
+
+        @Test
+        void addItemToWishlist_costsOneReadAndOneWrite() {
+            RoundTrips cost = countingRepository.measure(() ->
+                    wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A"));
+
+            assertThat(cost, RoundTripBudget.atMost().reads(1).writes(1));
+        }
+
+        @Test
+        void addItemsToWishlist_costsOneReadAndOneWrite() {
+            RoundTrips cost = countingRepository.measure(() -> wishlistService.addItemsToWishlist(wishlistId,
+                    List.of("test-wishlist-item-A", "test-wishlist-item-B", "test-wishlist-item-C")));
+
+            assertThat(cost, RoundTripBudget.atMost().reads(1).writes(1));
+        }
+
+        @Test
+        void getWishlistById_costsOneRead() {
+            RoundTrips cost = countingRepository.measure(() -> wishlistService.getWishlistById(wishlistId));
+
+            assertThat(cost, RoundTripBudget.atMost().reads(1));
+        }
+
+        @Test
+        void moveItem_costsTwoReadsAndOneTransaction() {
+            UUID targetId = UUID.randomUUID();
+            addWishlistInDynamo(targetId, UUID.randomUUID(), "test-name-to");
+            Item item = wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+
+            RoundTrips cost = countingRepository.measure(() ->
+                    wishlistService.moveItem(wishlistId, targetId, item.itemId(), 0));
+
+            assertThat(cost, RoundTripBudget.atMost().reads(2).transactions(1));
+        }
+
+        @Test
+        void getWishlistIfChanged_whenUnchanged_readsOnlyTheVersion() {
+            wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+            long version = wishlistService.getWishlistById(wishlistId, ReadConsistency.STRONG).version();
+
+            RoundTrips cost = countingRepository.measure(() ->
+                    wishlistService.getWishlistIfChanged(wishlistId, version));
+
+            // the id (38 bytes) and version attributes; the owner and name alone would take it past this
+            assertThat(cost, RoundTripBudget.atMost().reads(1).bytesRead(64));
+        }
+
+        @Test
+        void getWishlistIfChanged_whenChanged_costsAVersionReadAndOneRead() {
+            wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item-A");
+
+            RoundTrips cost = countingRepository.measure(() -> wishlistService.getWishlistIfChanged(wishlistId, 0));
+
+            assertThat(cost, RoundTripBudget.atMost().reads(2));
+        }
+
+        @Test
+        void getWishlistItems_readsOnlyTheWindow() {
+            wishlistService.addItemsToWishlist(wishlistId, List.of("a".repeat(200), "b".repeat(200), "c".repeat(200)));
+
+            RoundTrips cost = countingRepository.measure(() -> wishlistService.getWishlistItems(wishlistId, 1, 1));
+
+            // the id and one Item of about 250 bytes; the whole record is over 750
+            assertThat(cost, RoundTripBudget.atMost().reads(1).bytesRead(400));
+        }
+    }
+
+    @Nested
+    @DisplayName("SearchItems")
+    class SearchItems {
+
+        private UUID owner;
+        private UUID wishlistIdA;
+        private UUID wishlistIdB;
+
+        @BeforeEach
+        void setup() {
+            owner = UUID.randomUUID();
+            wishlistIdA = UUID.randomUUID();
+            wishlistIdB = UUID.randomUUID();
+            addWishlistInDynamo(wishlistIdA, owner, "test-name-A");
+            addWishlistInDynamo(wishlistIdB, owner, "test-name-B");
+        }
+
+        @Test
+        void matchesItemsAcrossTheOwnersWishlists() {
+            Item itemA = wishlistService.addItemToWishlist(wishlistIdA, "Red Bicycle Helmet");
+            wishlistService.addItemToWishlist(wishlistIdA, "Blue Scarf");
+            Item itemB = wishlistService.addItemToWishlist(wishlistIdB, "red bicycle bell");
+
+            List<Item> results = wishlistService.searchItems(owner, "RED bicycle");
+
+            assertThat(extractItemIds(results), containsInAnyOrder(itemA.itemId(), itemB.itemId()));
+        }
+
+        @Test
+        void lastTokenMatchesAsPrefix() {
+            Item item = wishlistService.addItemToWishlist(wishlistIdA, "Red Bicycle Helmet");
+            wishlistService.addItemToWishlist(wishlistIdA, "Red Scarf");
+
+            List<Item> results = wishlistService.searchItems(owner, "red bic");
+
+            assertThat(extractItemIds(results), contains(item.itemId()));
+        }
+
+        @Test
+        void repeatedToken_onlyTheLastTypedTokenMatchesAsPrefix() {
+            Item item = wishlistService.addItemToWishlist(wishlistIdA, "Bar Food");
+
+            assertThat(extractItemIds(wishlistService.searchItems(owner, "bar foo")), contains(item.itemId()));
+            assertThat(wishlistService.searchItems(owner, "bar foo bar"), is(empty()));
+        }
+
+        @Test
+        void itemsMovedAway_areNotFound_andTheRestKeepTheirOrder() {
+            UUID otherWishlistId = UUID.randomUUID();
+            addWishlistInDynamo(otherWishlistId, UUID.randomUUID(), "test-name-C");
+            List<Item> items = wishlistService.addItemsToWishlist(wishlistIdA,
+                    List.of("helmet 1", "helmet 2", "helmet 3", "helmet 4", "helmet 5", "helmet 6"));
+            wishlistService.searchItems(owner, "helmet");
+
+            for (int i = 0; i < 4; i++) {
+                wishlistService.moveItem(wishlistIdA, otherWishlistId, items.get(i).itemId(), 0);
+            }
+
+            assertThat(extractItemIds(wishlistService.searchItems(owner, "helmet")),
+                    contains(items.get(4).itemId(), items.get(5).itemId()));
+        }
+
+        @Test
+        void itemsAddedAfterFirstSearch_areFound() {
+            wishlistService.searchItems(owner, "helmet");
+
+            Item item = wishlistService.addItemToWishlist(wishlistIdB, "Red Bicycle Helmet");
+
+            assertThat(extractItemIds(wishlistService.searchItems(owner, "helmet")), contains(item.itemId()));
+        }
+
+        @Test
+        void otherOwnersItems_areNotFound() {
+            UUID otherWishlistId = UUID.randomUUID();
+            addWishlistInDynamo(otherWishlistId, UUID.randomUUID(), "test-name-C");
+            wishlistService.addItemToWishlist(otherWishlistId, "Red Bicycle Helmet");
+
+            assertThat(wishlistService.searchItems(owner, "helmet"), is(empty()));
+        }
+
+        @Test
+        void blankQuery_returnsEmptyList() {
+            wishlistService.addItemToWishlist(wishlistIdA, "Red Bicycle Helmet");
+
+            assertThat(wishlistService.searchItems(owner, " "), is(empty()));
+        }
+
+        @Test
+        void searchDuringTheFirstLoad_waitsForIt() throws Exception {
+            Item item = wishlistService.addItemToWishlist(wishlistIdA, "Red Bicycle Helmet");
+            DynamoRepository dynamoRepository = new DynamoRepository(dynamoDbClient, TABLE_NAME);
+            CountDownLatch loading = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Repository slowRepository = new Repository() {
+                @Override
+                public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+                    return dynamoRepository.findById(wishlistId, consistency);
+                }
+
+                @Override
+                public List<Wishlist> queryByOwner(UUID ownerId) {
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return dynamoRepository.queryByOwner(ownerId);
+                }
+
+                @Override
+                public void save(Wishlist wishlist) {
+                    dynamoRepository.save(wishlist);
+                }
+
+                @Override
+                public void commit(UnitOfWork unitOfWork) {
+                    dynamoRepository.commit(unitOfWork);
+                }
+            };
+            WishlistService slowService = new WishlistService(slowRepository);
+
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<List<Item>> first = executor.submit(() -> slowService.searchItems(owner, "helmet"));
+                loading.await();
+                Future<List<Item>> second = executor.submit(() -> slowService.searchItems(owner, "helmet"));
+                Thread.sleep(100);
+                assertThat(second.isDone(), is(false));
+
+                release.countDown();
+
+                assertThat(extractItemIds(second.get()), contains(item.itemId()));
+                assertThat(extractItemIds(first.get()), contains(item.itemId()));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Migration")
+    class Migrations {
+
+        private final Migration addSchemaVersion = new Migration() {
+            @Override
+            public boolean needsMigration(Map<String, AttributeValue> item) {
+                return !item.containsKey("schemaVersion");
+            }
+
+            @Override
+            public Map<String, AttributeValue> migrate(Map<String, AttributeValue> item) {
+                item.put("schemaVersion", AttributeValue.builder().n("2").build());
+                return item;
+            }
+        };
+
+        @Test
+        void allRecords_areMigrated_withoutLosingData() throws InterruptedException {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            Item item = wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item");
+
+            MigrationRunner.Progress progress = new MigrationRunner(
+                    dynamoDbClient, TABLE_NAME, addSchemaVersion, 2, 1000, 1000, null).run();
+
+            assertThat(progress.migrated(), is(greaterThanOrEqualTo(1L)));
+            assertThat(getRawItem(wishlistId).get("schemaVersion").n(), is("2"));
+            Wishlist wishlist = wishlistService.getWishlistById(wishlistId, ReadConsistency.STRONG);
+            assertThat(wishlist.name(), is("test-name"));
+            assertThat(extractItemIds(wishlist.items()), contains(item.itemId()));
+        }
+
+        @Test
+        void secondRun_migratesNothing() throws InterruptedException {
+            addWishlistInDynamo(UUID.randomUUID(), UUID.randomUUID(), "test-name");
+            new MigrationRunner(dynamoDbClient, TABLE_NAME, addSchemaVersion, 2, 1000, 1000, null).run();
+
+            MigrationRunner.Progress progress = new MigrationRunner(
+                    dynamoDbClient, TABLE_NAME, addSchemaVersion, 2, 1000, 1000, null).run();
+
+            assertThat(progress.scanned(), is(greaterThanOrEqualTo(1L)));
+            assertThat(progress.migrated(), is(0L));
+        }
+
+        @Test
+        void completedSegments_areNotRescanned(@TempDir Path checkpointDir) throws InterruptedException {
+            Path checkpointFile = checkpointDir.resolve("migration.properties");
+            addWishlistInDynamo(UUID.randomUUID(), UUID.randomUUID(), "test-name");
+            new MigrationRunner(dynamoDbClient, TABLE_NAME, addSchemaVersion, 2, 1000, 1000, checkpointFile).run();
+
+            MigrationRunner.Progress progress = new MigrationRunner(
+                    dynamoDbClient, TABLE_NAME, addSchemaVersion, 2, 1000, 1000, checkpointFile).run();
+
+            assertThat(progress.scanned(), is(0L));
+        }
+
+        @Test
+        void recordChangedBetweenScanAndWrite_isMigratedWithoutLosingTheChange() throws InterruptedException {
+            UUID wishlistId = UUID.randomUUID();
+            addWishlistInDynamo(wishlistId, UUID.randomUUID(), "test-name");
+            AtomicReference<Item> concurrentlyAdded = new AtomicReference<>();
+            Migration interferingMigration = new Migration() {
+                @Override
+                public boolean needsMigration(Map<String, AttributeValue> item) {
+                    return addSchemaVersion.needsMigration(item);
+                }
+
+                @Override
+                public Map<String, AttributeValue> migrate(Map<String, AttributeValue> item) {
+                    if (item.get("id").s().equals(wishlistId.toString()) && concurrentlyAdded.get() == null) {
+                        concurrentlyAdded.set(wishlistService.addItemToWishlist(wishlistId, "test-wishlist-item"));
+                    }
+                    return addSchemaVersion.migrate(item);
+                }
+            };
+
+            MigrationRunner.Progress progress = new MigrationRunner(
+                    dynamoDbClient, TABLE_NAME, interferingMigration, 2, 1000, 1000, null).run();
+
+            assertThat(progress.conflicts(), is(greaterThanOrEqualTo(1L)));
+            assertThat(getRawItem(wishlistId).get("schemaVersion").n(), is("2"));
+            Wishlist wishlist = wishlistService.getWishlistById(wishlistId, ReadConsistency.STRONG);
+            assertThat(extractItemIds(wishlist.items()), contains(concurrentlyAdded.get().itemId()));
+            assertThat(wishlist.version(), is(2L));
+        }
+
+        @Test
+        void interruptedRun_resumesFromTheLastCheckpointedPage(@TempDir Path checkpointDir) throws InterruptedException {
+            Path checkpointFile = checkpointDir.resolve("migration.properties");
+            for (int i = 0; i < 5; i++) {
+                addWishlistInDynamo(UUID.randomUUID(), UUID.randomUUID(), "test-name");
+            }
+            AtomicInteger calls = new AtomicInteger();
+            Migration addResumeMarker = new Migration() {
+                @Override
+                public boolean needsMigration(Map<String, AttributeValue> item) {
+                    return !item.containsKey("resumeMarker");
+                }
+
+                @Override
+                public Map<String, AttributeValue> migrate(Map<String, AttributeValue> item) {
+                    if (calls.incrementAndGet() == 3) {
+                        throw new IllegalStateException("simulated crash");
+                    }
+                    item.put("resumeMarker", AttributeValue.builder().bool(true).build());
+                    return item;
+                }
+            };
+            long records = dynamoDbClient.scan(ScanRequest.builder().tableName(TABLE_NAME).select(Select.COUNT).build())
+                    .count();
+
+            // one segment and one record per page, so the crash comes two checkpoints into the segment
+            MigrationRunner interrupted = new MigrationRunner(
+                    dynamoDbClient, TABLE_NAME, addResumeMarker, 1, 1000, 1000, checkpointFile, 1);
+            assertThrows(RuntimeException.class, interrupted::run);
+            MigrationRunner.Progress progress = new MigrationRunner(
+                    dynamoDbClient, TABLE_NAME, addResumeMarker, 1, 1000, 1000, checkpointFile, 1).run();
+
+            assertThat(interrupted.progress().migrated(), is(2L));
+            assertThat(progress.scanned(), is(records - 2));
+            assertThat(progress.migrated(), is(records - 2));
+        }
+    }
+
+    private static DynamoDbClient newDynamoDbClient(ClientOverrideConfiguration configuration) {
+        return DynamoDbClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("fake", "fakeSecret"
+                        )
+                ))
+                .region(Region.US_WEST_2)
+                .endpointOverride(URI.create("http://localhost:" + dynamodb.getMappedPort(DYNAMO_PORT)))
+                .overrideConfiguration(configuration)
+                .build();
+    }
+
     private void addWishlistInDynamo(UUID wishlistId, UUID owner, String name) {
         WishlistStorable wishlistStorable = new WishlistStorable(
                 wishlistId.toString(),
@@ -437,6 +1663,15 @@ class IntegrationTest {
                 .build());
     }
 
+    private Map<String, AttributeValue> getRawItem(UUID wishlistId) {
+        return dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of("id", AttributeValue.builder().s(wishlistId.toString()).build()))
+                .consistentRead(true)
+                .build())
+                .item();
+    }
+
     private List<UUID> getWishlistItemIds(UUID wishlistId) {
         WishlistStorable wishlistStorable = getWishlistStorable(wishlistId);
         return wishlistStorable.getItems()
@@ -445,6 +1680,10 @@ class IntegrationTest {
                 .collect(Collectors.toList());
     }
 
+    private List<UUID> extractItemIds(List<Item> items) {
+        return items.stream().map(Item::itemId).collect(Collectors.toList());
+    }
+
     private List<UUID> extractWishlistIds(List<Wishlist> listOfWishlists) {
         return listOfWishlists.stream().map(Wishlist::wishlistId).collect(Collectors.toList());
     }
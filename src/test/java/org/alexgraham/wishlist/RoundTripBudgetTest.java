@@ -0,0 +1,133 @@
+package org.alexgraham.wishlist;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.alexgraham.wishlist.domain.WishlistService;
+import org.alexgraham.wishlist.persistence.CountingRepository;
+import org.alexgraham.wishlist.persistence.InMemoryRepository;
+import org.alexgraham.wishlist.persistence.RoundTripBudget;
+import org.alexgraham.wishlist.persistence.RoundTrips;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Round-trip budgets for each WishlistService operation, against the in-memory Repository.
+ *
+ * These pin down how many Repository calls each use case costs; IntegrationTest checks the same
+ * budgets against DynamoDB.
+ */
+class RoundTripBudgetTest {
+
+    private CountingRepository repo;
+    private WishlistService wishlistService;
+
+    private UUID owner;
+    private Wishlist wishlist;
+    private Item itemA;
+    private Item itemB;
+
+    @BeforeEach
+    void setup() {
+        repo = new CountingRepository(new InMemoryRepository());
+        wishlistService = new WishlistService(repo);
+
+        owner = UUID.randomUUID();
+        wishlist = wishlistService.createWishlist(owner, "test-name");
+        itemA = wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-A");
+        itemB = wishlistService.addItemToWishlist(wishlist.wishlistId(), "test-wishlist-item-B");
+    }
+
+    @Test
+    void createWishlist_costsOneWrite() {
+        RoundTrips cost = repo.measure(() -> wishlistService.createWishlist(owner, "another"));
+
+        assertThat(cost, RoundTripBudget.atMost().writes(1));
+    }
+
+    @Test
+    void addItemToWishlist_costsOneReadAndOneWrite() {
+        RoundTrips cost = repo.measure(() -> wishlistService.addItemToWishlist(wishlist.wishlistId(), "item"));
+
+        assertThat(cost, RoundTripBudget.atMost().reads(1).writes(1));
+    }
+
+    @Test
+    void addItemsToWishlist_costsOneReadAndOneWrite_regardlessOfCount() {
+        RoundTrips cost = repo.measure(() -> wishlistService.addItemsToWishlist(wishlist.wishlistId(),
+                List.of("item-1", "item-2", "item-3", "item-4", "item-5")));
+
+        assertThat(cost, RoundTripBudget.atMost().reads(1).writes(1));
+    }
+
+    @Test
+    void reorderItemInWishlist_costsOneReadAndOneWrite() {
+        RoundTrips cost = repo.measure(() ->
+                wishlistService.reorderItemInWishlist(wishlist.wishlistId(), itemB.itemId(), 0));
+
+        assertThat(cost, RoundTripBudget.atMost().reads(1).writes(1));
+    }
+
+    @Test
+    void getWishlistById_costsOneRead() {
+        RoundTrips cost = repo.measure(() -> wishlistService.getWishlistById(wishlist.wishlistId()));
+
+        assertThat(cost, RoundTripBudget.atMost().reads(1));
+    }
+
+    @Test
+    void getWishlistIfChanged_whenUnchanged_costsOneVersionRead() {
+        Wishlist current = wishlistService.getWishlistById(wishlist.wishlistId());
+
+        RoundTrips cost = repo.measure(() ->
+                wishlistService.getWishlistIfChanged(wishlist.wishlistId(), current.version()));
+
+        assertThat(cost, RoundTripBudget.atMost().reads(1).bytesRead(Long.BYTES));
+    }
+
+    @Test
+    void getWishlistItems_readsOnlyTheWindow() {
+        RoundTrips cost = repo.measure(() -> wishlistService.getWishlistItems(wishlist.wishlistId(), 1, 1));
+
+        // one item: 16 byte id, 4 byte length, details
+        assertThat(cost, RoundTripBudget.atMost().reads(1).bytesRead(16 + 4 + itemB.details().length()));
+    }
+
+    @Test
+    void listWishlistsByOwner_costsOneQuery() {
+        RoundTrips cost = repo.measure(() -> wishlistService.listWishlistsByOwner(owner));
+
+        assertThat(cost, RoundTripBudget.atMost().queries(1));
+    }
+
+    @Test
+    void listRecentWishlistsByOwner_costsOneQuery() {
+        RoundTrips cost = repo.measure(() -> wishlistService.listWishlistsByOwner(owner, 1, ListOrder.NEWEST_FIRST));
+
+        assertThat(cost, RoundTripBudget.atMost().queries(1));
+    }
+
+    @Test
+    void moveItem_costsTwoReadsAndOneTransaction() {
+        Wishlist target = wishlistService.createWishlist(owner, "target");
+
+        RoundTrips cost = repo.measure(() ->
+                wishlistService.moveItem(wishlist.wishlistId(), target.wishlistId(), itemA.itemId(), 0));
+
+        assertThat(cost, RoundTripBudget.atMost().reads(2).transactions(1));
+    }
+
+    @Test
+    void searchItems_afterFirstSearch_costsNothing() {
+        wishlistService.searchItems(owner, "item");
+
+        RoundTrips cost = repo.measure(() -> wishlistService.searchItems(owner, "item"));
+
+        assertThat(cost, RoundTripBudget.atMost());
+    }
+}
@@ -0,0 +1,170 @@
+package org.alexgraham.wishlist;
+
+import org.alexgraham.wishlist.domain.AtomicWishlist;
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ItemSequence;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.alexgraham.wishlist.domain.WishlistSnapshot;
+import org.alexgraham.wishlist.persistence.InMemoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.MissingResourceException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the immutable Wishlist representation: ItemSequence, WishlistSnapshot and AtomicWishlist.
+ */
+class WishlistSnapshotTest {
+
+    private Item itemA;
+    private Item itemB;
+    private Item itemC;
+    private WishlistSnapshot snapshot;
+
+    @BeforeEach
+    void setup() {
+        itemA = Item.create("test-wishlist-item-A");
+        itemB = Item.create("test-wishlist-item-B");
+        itemC = Item.create("test-wishlist-item-C");
+        snapshot = WishlistSnapshot.of(Wishlist.rehydrate(UUID.randomUUID(), UUID.randomUUID(), "test-name",
+                new ArrayList<>(List.of(itemA, itemB, itemC))));
+    }
+
+    @Test
+    void changes_leaveTheOriginalSnapshotUnchanged() {
+        Item itemD = Item.create("test-wishlist-item-D");
+
+        WishlistSnapshot changed = snapshot.withItemAdded(itemD).withItemRemoved(itemA.itemId());
+
+        assertThat(changed.items().asList(), contains(itemB, itemC, itemD));
+        assertThat(snapshot.items().asList(), contains(itemA, itemB, itemC));
+        assertThat(changed.version(), is(snapshot.version() + 1)); // once per save, as for a Wishlist
+    }
+
+    @Test
+    void withItemReordered_followsWishlistRules() {
+        assertThat(snapshot.withItemReordered(itemC.itemId(), 0).items().asList(), contains(itemC, itemA, itemB));
+        assertThat(snapshot.withItemReordered(itemA.itemId(), 100).items().asList(), contains(itemB, itemC, itemA));
+        assertThrows(MissingResourceException.class, () -> snapshot.withItemReordered(UUID.randomUUID(), 0));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.withItemReordered(itemA.itemId(), -1));
+    }
+
+    @Test
+    void toWishlist_roundTrips() {
+        Wishlist wishlist = snapshot.withItemInserted(Item.create("test-wishlist-item-D"), 1).toWishlist();
+
+        WishlistSnapshot again = WishlistSnapshot.of(wishlist);
+
+        assertThat(again.items().asList(), is(wishlist.items()));
+        assertThat(again.version(), is(wishlist.version()));
+        assertThat(again.storedVersion(), is(wishlist.storedVersion()));
+    }
+
+    @Test
+    void changedSnapshot_savesAsOneNewVersion() {
+        InMemoryRepository repo = new InMemoryRepository();
+        repo.save(snapshot.toWishlist());
+        WishlistSnapshot read = WishlistSnapshot.of(repo.findById(snapshot.wishlistId(), ReadConsistency.STRONG).get());
+
+        WishlistSnapshot changed = read.withItemAdded(Item.create("test-wishlist-item-D")).withItemRemoved(itemA.itemId());
+        repo.save(changed.toWishlist());
+
+        assertThat(repo.findVersionById(snapshot.wishlistId(), ReadConsistency.STRONG).get(), is(read.version() + 1));
+        assertThrows(ConcurrentModificationException.class,
+                () -> repo.save(read.withItemRemoved(itemB.itemId()).toWishlist()));
+    }
+
+    @Test
+    void withChangesOf_matchesTheChangedWishlist() {
+        Random random = new Random(42);
+        WishlistSnapshot stored = snapshot;
+
+        for (int i = 0; i < 200; i++) {
+            Wishlist wishlist = stored.toWishlist();
+            for (int edits = random.nextInt(4); edits > 0; edits--) {
+                List<Item> items = wishlist.items();
+                switch (items.isEmpty() ? 0 : random.nextInt(4)) {
+                    case 0:
+                        wishlist.addItem(Item.create("item-" + i));
+                        break;
+                    case 1:
+                        wishlist.insertItem(Item.create("item-" + i), random.nextInt(items.size() + 1));
+                        break;
+                    case 2:
+                        wishlist.removeItem(items.get(random.nextInt(items.size())).itemId());
+                        break;
+                    default:
+                        wishlist.reorderItem(items.get(random.nextInt(items.size())).itemId(),
+                                random.nextInt(items.size()));
+                }
+            }
+
+            stored = stored.withChangesOf(wishlist).saved();
+
+            assertThat(stored.items().asList(), is(wishlist.items()));
+            assertThat(stored.version(), is(wishlist.version()));
+        }
+    }
+
+    @Test
+    void itemSequence_matchesArrayListUnderRandomEdits() {
+        Random random = new Random(42);
+        List<Item> expected = new ArrayList<>();
+        ItemSequence sequence = ItemSequence.empty();
+
+        for (int i = 0; i < 2_000; i++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                int index = random.nextInt(expected.size() + 1);
+                Item item = Item.create("item-" + i);
+                expected.add(index, item);
+                sequence = sequence.insert(index, item);
+            } else {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                sequence = sequence.remove(index);
+            }
+        }
+
+        assertThat(sequence.asList(), is(expected));
+    }
+
+    @Test
+    void atomicWishlist_concurrentUpdates_areNotLost() throws Exception {
+        AtomicWishlist holder = new AtomicWishlist(snapshot);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                writers.add(executor.submit(() -> {
+                    for (int j = 0; j < 1_000; j++) {
+                        Item item = Item.create("concurrent-item");
+                        holder.update(current -> current.withItemAdded(item));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(holder.get().items().size(), is(3 + 4_000));
+        assertThat(holder.get().version(), is(snapshot.version() + 4_000)); // one new version per update
+        assertThat(holder.get().storedVersion(), is(holder.get().version()));
+    }
+}
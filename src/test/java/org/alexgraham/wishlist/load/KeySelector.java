@@ -0,0 +1,77 @@
+package org.alexgraham.wishlist.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks an index into a key space of a fixed size, following some access distribution.
+ */
+interface KeySelector {
+
+    /**
+     * @return an index in [0, size)
+     */
+    int next();
+
+    static KeySelector uniform(int size) {
+        return () -> ThreadLocalRandom.current().nextInt(size);
+    }
+
+    /**
+     * A Zipfian distribution, where index 0 is the most popular key.
+     *
+     * Uses the constant-time generator from Gray et al., "Quickly Generating Billion-Record
+     * Synthetic Databases" (the same one YCSB uses). The zeta constants are computed once up
+     * front, which is O(size).
+     *
+     * @param size the number of keys
+     * @param theta the skew; 0.99 is the conventional "hot keys" setting
+     */
+    static KeySelector zipfian(int size, double theta) {
+        return new Zipfian(size, theta);
+    }
+
+    final class Zipfian implements KeySelector {
+        private final int size;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        private Zipfian(int size, double theta) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size must be positive, size=" + size);
+            }
+            if (theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("theta must be in (0, 1), theta=" + theta);
+            }
+            this.size = size;
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetaN = zeta(size, theta);
+            double zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / size, 1 - theta)) / (1 - zeta2 / zetaN);
+        }
+
+        @Override
+        public int next() {
+            double u = ThreadLocalRandom.current().nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return Math.min(1, size - 1);
+            }
+            int index = (int) (size * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(index, size - 1);
+        }
+
+        private static double zeta(int n, double theta) {
+            double sum = 0;
+            for (int i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
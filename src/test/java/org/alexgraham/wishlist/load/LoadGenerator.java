@@ -0,0 +1,491 @@
+package org.alexgraham.wishlist.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.alexgraham.wishlist.domain.WishlistService;
+import org.alexgraham.wishlist.persistence.InMemoryRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A multi-threaded load generator for WishlistService.
+ *
+ * Seeds a key space of owners and wishlists through the service, then drives it from a number of
+ * threads with a weighted mix of operations, choosing wishlists and owners with a uniform or
+ * Zipfian skew. Latency is recorded per operation into HDR histograms.
+ *
+ * A wishlist that ADD_ITEM fills to the configured maximum is replaced in the key space by a freshly
+ * seeded one, so the hot keys stay at a steady size rather than growing for the whole run.
+ *
+ * Works against any Repository; run {@link #main} for an in-memory run, or construct it with a
+ * DynamoRepository pointed at DynamoDB Local.
+ */
+public class LoadGenerator {
+
+    public enum Operation {
+        CREATE, ADD_ITEM, REORDER, GET, LIST_BY_OWNER
+    }
+
+    public enum Skew {
+        UNIFORM, ZIPFIAN
+    }
+
+    private final WishlistService service;
+    private final Config config;
+
+    private UUID[] owners;
+    private AtomicReferenceArray<Slot> slots;
+
+    public LoadGenerator(Repository repo, Config config) {
+        this.service = new WishlistService(repo);
+        this.config = config;
+    }
+
+    /**
+     * Seeds the key space, runs the warmup and the measured run, and reports the measured run.
+     */
+    public Report run() throws InterruptedException {
+        seed();
+
+        KeySelector wishlistSelector = selector(slots.length());
+        KeySelector ownerSelector = selector(owners.length);
+
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup.toNanos();
+        long stopAt = measureFrom + config.duration.toNanos();
+
+        List<Thread> threads = new ArrayList<>(config.threads);
+        for (int i = 0; i < config.threads; i++) {
+            Thread thread = config.threadFactory.newThread(() -> {
+                while (true) {
+                    long begin = System.nanoTime();
+                    if (begin >= stopAt) {
+                        return;
+                    }
+                    Operation operation = config.nextOperation();
+                    Slot full = null;
+                    Outcome outcome = Outcome.OK;
+                    try {
+                        full = execute(operation, wishlistSelector, ownerSelector);
+                    } catch (ConcurrentModificationException e) {
+                        outcome = Outcome.CONFLICT;
+                    } catch (RuntimeException e) {
+                        outcome = Outcome.ERROR;
+                    }
+                    long end = System.nanoTime();
+                    if (begin >= measureFrom) {
+                        stats.get(operation).record(end - begin, outcome);
+                    }
+                    if (full != null) {
+                        replace(full);
+                    }
+                }
+            });
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // operations started before stopAt finish after it, so the measured run is longer than configured
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - measureFrom);
+
+        return new Report(config, stats, elapsed);
+    }
+
+    private void seed() {
+        owners = new UUID[config.owners];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = UUID.randomUUID();
+        }
+
+        slots = new AtomicReferenceArray<>(config.wishlists);
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, seedWishlist(i));
+        }
+    }
+
+    private Slot seedWishlist(int index) {
+        Wishlist wishlist = service.createWishlist(owners[index % owners.length], "load-wishlist-" + index);
+        UUID[] itemIds = new UUID[config.itemsPerWishlist];
+        for (int j = 0; j < itemIds.length; j++) {
+            Item item = service.addItemToWishlist(wishlist.wishlistId(), "load item " + index + "-" + j);
+            itemIds[j] = item.itemId();
+        }
+        return new Slot(index, wishlist.wishlistId(), itemIds);
+    }
+
+    /**
+     * @return the slot, when this operation filled its wishlist and it should be replaced
+     */
+    private Slot execute(Operation operation, KeySelector wishlistSelector, KeySelector ownerSelector) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Slot slot;
+        switch (operation) {
+            case CREATE:
+                service.createWishlist(owners[ownerSelector.next()], "load-wishlist");
+                return null;
+            case ADD_ITEM:
+                slot = slots.get(wishlistSelector.next());
+                service.addItemToWishlist(slot.wishlistId, "load item");
+                if (slot.items.incrementAndGet() >= config.maxItemsPerWishlist
+                        && slot.replacing.compareAndSet(false, true)) {
+                    return slot;
+                }
+                return null;
+            case REORDER:
+                slot = slots.get(wishlistSelector.next());
+                UUID[] itemIds = slot.seededItemIds;
+                if (itemIds.length > 0) {
+                    service.reorderItemInWishlist(slot.wishlistId, itemIds[random.nextInt(itemIds.length)],
+                            random.nextInt(itemIds.length));
+                }
+                return null;
+            case GET:
+                service.getWishlistById(slots.get(wishlistSelector.next()).wishlistId);
+                return null;
+            case LIST_BY_OWNER:
+                service.listWishlistsByOwner(owners[ownerSelector.next()]);
+                return null;
+            default:
+                throw new IllegalStateException("unknown operation " + operation);
+        }
+    }
+
+    // outside the timed operation, so the reseeding does not count against ADD_ITEM's latency
+    private void replace(Slot full) {
+        try {
+            slots.set(full.index, seedWishlist(full.index));
+        } catch (RuntimeException e) {
+            // keep the full one for now; the next ADD_ITEM to it tries again
+            full.replacing.set(false);
+        }
+    }
+
+    private KeySelector selector(int size) {
+        return config.skew == Skew.ZIPFIAN ? KeySelector.zipfian(size, config.zipfianTheta) : KeySelector.uniform(size);
+    }
+
+    /**
+     * Runs an in-memory load test. Settings are read from system properties, e.g.
+     * {@code -Dload.threads=64 -Dload.virtualThreads=true -Dload.skew=ZIPFIAN -Dload.durationSeconds=30}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Config.Builder builder = Config.builder()
+                .threads(Integer.getInteger("load.threads", 8))
+                .owners(Integer.getInteger("load.owners", 1_000))
+                .wishlists(Integer.getInteger("load.wishlists", 10_000))
+                .itemsPerWishlist(Integer.getInteger("load.itemsPerWishlist", 10))
+                .maxItemsPerWishlist(Integer.getInteger("load.maxItemsPerWishlist", 50))
+                .skew(Skew.valueOf(System.getProperty("load.skew", "UNIFORM")))
+                .warmup(Duration.ofSeconds(Long.getLong("load.warmupSeconds", 5)))
+                .duration(Duration.ofSeconds(Long.getLong("load.durationSeconds", 30)));
+        if (Boolean.getBoolean("load.virtualThreads")) {
+            builder.threadFactory(Config.virtualThreadFactory());
+        }
+
+        Report report = new LoadGenerator(new InMemoryRepository(), builder.build()).run();
+        System.out.println(report);
+    }
+
+    public static final class Config {
+        private final int threads;
+        private final ThreadFactory threadFactory;
+        private final int owners;
+        private final int wishlists;
+        private final int itemsPerWishlist;
+        private final int maxItemsPerWishlist;
+        private final Skew skew;
+        private final double zipfianTheta;
+        private final Duration warmup;
+        private final Duration duration;
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+
+        private Config(Builder builder) {
+            if (builder.threads <= 0 || builder.owners <= 0 || builder.wishlists <= 0) {
+                throw new IllegalArgumentException("threads, owners and wishlists must be positive");
+            }
+            if (builder.maxItemsPerWishlist <= builder.itemsPerWishlist) {
+                throw new IllegalArgumentException("maxItemsPerWishlist must be more than itemsPerWishlist");
+            }
+            if (builder.weights.isEmpty()) {
+                throw new IllegalArgumentException("the operation mix is empty");
+            }
+            this.threads = builder.threads;
+            this.threadFactory = builder.threadFactory;
+            this.owners = builder.owners;
+            this.wishlists = builder.wishlists;
+            this.itemsPerWishlist = builder.itemsPerWishlist;
+            this.maxItemsPerWishlist = builder.maxItemsPerWishlist;
+            this.skew = builder.skew;
+            this.zipfianTheta = builder.zipfianTheta;
+            this.warmup = builder.warmup;
+            this.duration = builder.duration;
+
+            this.operations = builder.weights.keySet().toArray(new Operation[0]);
+            this.cumulativeWeights = new int[operations.length];
+            int total = 0;
+            for (int i = 0; i < operations.length; i++) {
+                total += builder.weights.get(operations[i]);
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        /**
+         * A ThreadFactory for virtual threads. Looked up reflectively, since this project
+         * compiles for Java 11.
+         *
+         * @throws UnsupportedOperationException when not running on JDK 21 or later
+         */
+        public static ThreadFactory virtualThreadFactory() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                        .getMethod("factory")
+                        .invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+            }
+        }
+
+        private Operation nextOperation() {
+            int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            throw new IllegalStateException("weight out of range: " + pick);
+        }
+
+        public static final class Builder {
+            private int threads = 8;
+            private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+            private int owners = 100;
+            private int wishlists = 1_000;
+            private int itemsPerWishlist = 5;
+            private int maxItemsPerWishlist = 50;
+            private Skew skew = Skew.UNIFORM;
+            private double zipfianTheta = 0.99;
+            private Duration warmup = Duration.ZERO;
+            private Duration duration = Duration.ofSeconds(10);
+            private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+            private Builder() {
+                // a read-heavy default mix
+                weights.put(Operation.CREATE, 2);
+                weights.put(Operation.ADD_ITEM, 10);
+                weights.put(Operation.REORDER, 5);
+                weights.put(Operation.GET, 70);
+                weights.put(Operation.LIST_BY_OWNER, 13);
+            }
+
+            public Builder threads(int threads) {
+                this.threads = threads;
+                return this;
+            }
+
+            public Builder threadFactory(ThreadFactory threadFactory) {
+                this.threadFactory = threadFactory;
+                return this;
+            }
+
+            public Builder owners(int owners) {
+                this.owners = owners;
+                return this;
+            }
+
+            public Builder wishlists(int wishlists) {
+                this.wishlists = wishlists;
+                return this;
+            }
+
+            public Builder itemsPerWishlist(int itemsPerWishlist) {
+                this.itemsPerWishlist = itemsPerWishlist;
+                return this;
+            }
+
+            /**
+             * Sets how many Items a wishlist in the key space may reach before it is replaced by a
+             * freshly seeded one.
+             */
+            public Builder maxItemsPerWishlist(int maxItemsPerWishlist) {
+                this.maxItemsPerWishlist = maxItemsPerWishlist;
+                return this;
+            }
+
+            public Builder skew(Skew skew) {
+                this.skew = skew;
+                return this;
+            }
+
+            public Builder zipfianTheta(double zipfianTheta) {
+                this.zipfianTheta = zipfianTheta;
+                return this;
+            }
+
+            public Builder warmup(Duration warmup) {
+                this.warmup = warmup;
+                return this;
+            }
+
+            public Builder duration(Duration duration) {
+                this.duration = duration;
+                return this;
+            }
+
+            /**
+             * Sets the relative weight of an operation in the mix; a weight of 0 removes it.
+             */
+            public Builder weight(Operation operation, int weight) {
+                if (weight < 0) {
+                    throw new IllegalArgumentException("negative weight=" + weight);
+                }
+                if (weight == 0) {
+                    weights.remove(operation);
+                } else {
+                    weights.put(operation, weight);
+                }
+                return this;
+            }
+
+            public Config build() {
+                return new Config(this);
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final int index;
+        private final UUID wishlistId;
+        private final UUID[] seededItemIds;
+        private final AtomicInteger items;
+        private final AtomicBoolean replacing = new AtomicBoolean();
+
+        private Slot(int index, UUID wishlistId, UUID[] seededItemIds) {
+            this.index = index;
+            this.wishlistId = wishlistId;
+            this.seededItemIds = seededItemIds;
+            this.items = new AtomicInteger(seededItemIds.length);
+        }
+    }
+
+    private enum Outcome {
+        OK, CONFLICT, ERROR
+    }
+
+    private static final class Stats {
+        private final Histogram latencyNanos = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+
+        void record(long nanos, Outcome outcome) {
+            latencyNanos.recordValue(nanos);
+            if (outcome == Outcome.CONFLICT) {
+                conflicts.increment();
+                errors.increment();
+            } else if (outcome == Outcome.ERROR) {
+                errors.increment();
+            }
+        }
+    }
+
+    public static final class Report {
+        private final Config config;
+        private final Map<Operation, Stats> stats;
+        private final Duration elapsed;
+
+        private Report(Config config, Map<Operation, Stats> stats, Duration elapsed) {
+            this.config = config;
+            this.stats = stats;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return how long the measured run actually took
+         */
+        public Duration elapsed() {
+            return elapsed;
+        }
+
+        public long count(Operation operation) {
+            return stats.get(operation).latencyNanos.getTotalCount();
+        }
+
+        /**
+         * @return how many operations failed, including conflicts
+         */
+        public long errors(Operation operation) {
+            return stats.get(operation).errors.sum();
+        }
+
+        /**
+         * @return how many operations gave up on a Wishlist that kept changing, which is expected on hot keys
+         */
+        public long conflicts(Operation operation) {
+            return stats.get(operation).conflicts.sum();
+        }
+
+        public double throughput(Operation operation) {
+            return count(operation) / (elapsed.toNanos() / 1e9);
+        }
+
+        /**
+         * @param percentile e.g. 99.9
+         * @return the latency at that percentile, in microseconds
+         */
+        public double latencyMicros(Operation operation, double percentile) {
+            return stats.get(operation).latencyNanos.getValueAtPercentile(percentile) / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(
+                    "threads=%d skew=%s duration=%s elapsed=%s%n%-14s %10s %8s %9s %12s %10s %10s %10s %10s %10s%n",
+                    config.threads, config.skew, config.duration, elapsed,
+                    "operation", "count", "errors", "conflicts", "ops/s",
+                    "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = stats.get(operation).latencyNanos;
+                sb.append(String.format("%-14s %10d %8d %9d %12.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        operation,
+                        count(operation),
+                        errors(operation),
+                        conflicts(operation),
+                        throughput(operation),
+                        latencyMicros(operation, 50),
+                        latencyMicros(operation, 90),
+                        latencyMicros(operation, 99),
+                        latencyMicros(operation, 99.9),
+                        histogram.getMaxValue() / 1e3));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.alexgraham.wishlist.load;
+
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.alexgraham.wishlist.persistence.InMemoryRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * A smoke test for the load generator, against the in-memory Repository.
+ */
+class LoadGeneratorTest {
+
+    @Test
+    void shortRun_exercisesEveryOperation_failingOnlyOnOccasionalConflicts() throws InterruptedException {
+        LoadGenerator.Config config = LoadGenerator.Config.builder()
+                .threads(4)
+                .owners(10)
+                .wishlists(50)
+                .itemsPerWishlist(3)
+                .skew(LoadGenerator.Skew.ZIPFIAN)
+                .duration(Duration.ofMillis(500))
+                .build();
+
+        LoadGenerator.Report report = new LoadGenerator(new InMemoryRepository(), config).run();
+
+        for (LoadGenerator.Operation operation : LoadGenerator.Operation.values()) {
+            assertThat(operation.name(), report.count(operation), is(greaterThan(0L)));
+            // writes to a hot key can lose every retry to the other threads; nothing else may fail
+            assertThat(operation.name(), report.errors(operation), is(report.conflicts(operation)));
+            assertThat(operation.name(), report.conflicts(operation),
+                    is(lessThanOrEqualTo(report.count(operation) / 10)));
+        }
+    }
+
+    @Test
+    void addItem_replacesAWishlistOnceItIsFull() throws InterruptedException {
+        AtomicInteger mostItemsSaved = new AtomicInteger();
+        InMemoryRepository repo = new InMemoryRepository() {
+            @Override
+            public void save(Wishlist wishlist) {
+                super.save(wishlist);
+                mostItemsSaved.accumulateAndGet(wishlist.items().size(), Math::max);
+            }
+        };
+        LoadGenerator.Config config = LoadGenerator.Config.builder()
+                .threads(1)
+                .owners(1)
+                .wishlists(1)
+                .itemsPerWishlist(2)
+                .maxItemsPerWishlist(8)
+                .weight(LoadGenerator.Operation.CREATE, 0)
+                .weight(LoadGenerator.Operation.REORDER, 0)
+                .weight(LoadGenerator.Operation.GET, 0)
+                .weight(LoadGenerator.Operation.LIST_BY_OWNER, 0)
+                .duration(Duration.ofMillis(200))
+                .build();
+
+        LoadGenerator.Report report = new LoadGenerator(repo, config).run();
+
+        assertThat(report.count(LoadGenerator.Operation.ADD_ITEM), is(greaterThan(8L)));
+        assertThat(mostItemsSaved.get(), is(8));
+    }
+}
@@ -0,0 +1,140 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ListOrder;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
+import org.alexgraham.wishlist.domain.Wishlist;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A test-support Repository decorator that counts the calls made to the backing Repository, and
+ * the bytes moved by them.
+ *
+ * Given the {@link ItemBytesInterceptor} of the DynamoDbClient behind the delegate, bytes are what
+ * the table transferred. Otherwise they are estimated from what the delegate was given or returned,
+ * as the size of each Wishlist in {@link WishlistCodec}'s encoding; that suits a delegate such as
+ * InMemoryRepository, but can't see a backend that reads more than it returns.
+ *
+ * Use {@link #measure(Runnable)} to find the cost of one operation, and {@link RoundTripBudget} to
+ * assert on it.
+ */
+public class CountingRepository implements Repository {
+
+    private final Repository delegate;
+    private final ItemBytesInterceptor backendBytes; // null to estimate bytes instead
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    public CountingRepository(Repository delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param backendBytes the interceptor on the DynamoDbClient that the delegate uses
+     */
+    public CountingRepository(Repository delegate, ItemBytesInterceptor backendBytes) {
+        this.delegate = delegate;
+        this.backendBytes = backendBytes;
+    }
+
+    @Override
+    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+        reads.increment();
+        Optional<Wishlist> wishlist = delegate.findById(wishlistId, consistency);
+        wishlist.ifPresent(found -> bytesRead.add(sizeOf(found)));
+        return wishlist;
+    }
+
+    @Override
+    public Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        reads.increment();
+        Optional<Long> version = delegate.findVersionById(wishlistId, consistency);
+        version.ifPresent(found -> bytesRead.add(Long.BYTES));
+        return version;
+    }
+
+    @Override
+    public Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        reads.increment();
+        Optional<List<Item>> items = delegate.findItemsById(wishlistId, offset, limit, consistency);
+        items.ifPresent(found -> bytesRead.add(sizeOf(found)));
+        return items;
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId) {
+        queries.increment();
+        List<Wishlist> wishlists = delegate.queryByOwner(ownerId);
+        wishlists.forEach(found -> bytesRead.add(sizeOf(found)));
+        return wishlists;
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId, int limit, ListOrder order) {
+        queries.increment();
+        List<Wishlist> wishlists = delegate.queryByOwner(ownerId, limit, order);
+        wishlists.forEach(found -> bytesRead.add(sizeOf(found)));
+        return wishlists;
+    }
+
+    @Override
+    public void save(Wishlist wishlist) {
+        writes.increment();
+        bytesWritten.add(sizeOf(wishlist));
+        delegate.save(wishlist);
+    }
+
+    @Override
+    public void commit(UnitOfWork unitOfWork) {
+        transactions.increment();
+        unitOfWork.wishlists().forEach(wishlist -> bytesWritten.add(sizeOf(wishlist)));
+        delegate.commit(unitOfWork);
+    }
+
+    /**
+     * @return the calls made so far
+     */
+    public RoundTrips total() {
+        if (backendBytes != null) {
+            return new RoundTrips(reads.sum(), queries.sum(), writes.sum(), transactions.sum(),
+                    backendBytes.bytesRead(), backendBytes.bytesWritten());
+        }
+        return new RoundTrips(reads.sum(), queries.sum(), writes.sum(), transactions.sum(),
+                bytesRead.sum(), bytesWritten.sum());
+    }
+
+    /**
+     * Runs an operation and returns the calls it made. Calls made concurrently by other threads
+     * are counted too, so measure on a Repository that only the operation uses.
+     */
+    public RoundTrips measure(Runnable operation) {
+        RoundTrips before = total();
+        operation.run();
+        return total().minus(before);
+    }
+
+    private static long sizeOf(Wishlist wishlist) {
+        return WishlistCodec.encode(wishlist).length;
+    }
+
+    // the bytes the Items take up in an encoded Wishlist: per Item, a 16 byte id and length-prefixed UTF-8 details
+    private static long sizeOf(List<Item> items) {
+        long size = 0;
+        for (Item item : items) {
+            size += 16 + 4 + (item.details() == null ? 0 : item.details().getBytes(StandardCharsets.UTF_8).length);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,255 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for HedgingRepository, against a delegate whose reads can be made slow or failing.
+ *
+ * Latencies are measured with a fake clock that every delegate read advances by READ_NANOS, so
+ * the hedge delay the repository learns is exactly known; the delay itself is still waited for in
+ * real time.
+ */
+class HedgingRepositoryTest {
+    private static final long READ_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final int WARM_UP_READS = 64; // enough for the latency window to compute a percentile
+    private static final long HUNG_MILLIS = 10_000;
+
+    private final UUID wishlistId = UUID.randomUUID();
+
+    private AtomicLong clock;
+    private SlowRepository delegate;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setup() {
+        clock = new AtomicLong();
+        delegate = new SlowRepository(clock);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void slowRead_isHedgedAfterThePercentileDelay() {
+        HedgingRepository repo = hedging(95.0, 1.0);
+        warmUp(repo);
+
+        delegate.slowNext(HUNG_MILLIS);
+        long elapsed = timeRead(repo);
+
+        assertThat(repo.hedgesSent(), is(1L));
+        assertThat(repo.hedgesWon(), is(1L));
+        assertThat(elapsed, greaterThanOrEqualTo(READ_NANOS));
+        assertThat(elapsed, lessThan(TimeUnit.MILLISECONDS.toNanos(HUNG_MILLIS)));
+    }
+
+    @Test
+    void fastRead_isNotHedged() {
+        HedgingRepository repo = hedging(95.0, 1.0);
+        warmUp(repo);
+
+        repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+
+        assertThat(repo.hedgesSent(), is(0L));
+    }
+
+    @Test
+    void slowRead_isNotHedgedBeforeThereAreLatencies() {
+        HedgingRepository repo = hedging(95.0, 1.0);
+
+        delegate.slowNext(50);
+        repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+
+        assertThat(repo.hedgesSent(), is(0L));
+    }
+
+    @Test
+    void losingPrimary_isCancelled() throws InterruptedException {
+        HedgingRepository repo = hedging(95.0, 1.0);
+        warmUp(repo);
+
+        delegate.slowNext(HUNG_MILLIS);
+        repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+
+        assertThat(delegate.interrupted.await(1, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    void cancelledPrimary_countsAsALowerBoundLatency() {
+        HedgingRepository repo = hedging(90.0, 1.0);
+        warmUp(repo);
+
+        // each hedged read records its hedge (one READ_NANOS) and its cancelled primary (two, since
+        // the hedge's read advanced the clock too), so after a window's worth the 90th percentile
+        // is the primaries' latency, not the hedges'
+        for (int i = 0; i < WARM_UP_READS / 2; i++) {
+            delegate.slowNext(HUNG_MILLIS);
+            repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        }
+
+        delegate.slowNext(HUNG_MILLIS);
+        assertThat(timeRead(repo), greaterThanOrEqualTo(2 * READ_NANOS));
+    }
+
+    @Test
+    void budget_isExhaustedAndThenRefilled() {
+        HedgingRepository repo = hedging(95.0, 0.1);
+        warmUp(repo); // banks 64 * 0.1 = 6.4 hedges
+
+        // each slow read earns 0.1 of a hedge and spends 1
+        for (int i = 0; i < 7; i++) {
+            delegate.slowNext(HUNG_MILLIS);
+            repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        }
+        assertThat(repo.hedgesSent(), is(7L));
+
+        delegate.slowNext(50);
+        repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        assertThat(repo.hedgesSent(), is(7L));
+
+        for (int i = 0; i < 9; i++) {
+            repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        }
+        delegate.slowNext(HUNG_MILLIS);
+        repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        assertThat(repo.hedgesSent(), is(8L));
+    }
+
+    @Test
+    void failedRead_throwsTheDelegatesException() {
+        HedgingRepository repo = hedging(95.0, 1.0);
+        IllegalStateException failure = new IllegalStateException("test-failure");
+
+        delegate.failNext(1, failure);
+
+        assertThat(assertThrows(IllegalStateException.class,
+                () -> repo.findById(wishlistId, ReadConsistency.EVENTUAL)), is(failure));
+    }
+
+    @Test
+    void failedHedge_fallsBackToThePrimary() {
+        HedgingRepository repo = hedging(95.0, 1.0);
+        warmUp(repo);
+
+        delegate.slowNext(50);
+        delegate.failNext(1, new IllegalStateException("test-failure"));
+
+        assertThat(repo.findById(wishlistId, ReadConsistency.EVENTUAL).isPresent(), is(true));
+        assertThat(repo.hedgesSent(), is(1L));
+        assertThat(repo.hedgesWon(), is(0L));
+    }
+
+    @Test
+    void failedPrimaryAndHedge_throwTheDelegatesException() {
+        HedgingRepository repo = hedging(95.0, 1.0);
+        warmUp(repo);
+
+        delegate.slowNext(50);
+        delegate.failNext(2, new IllegalStateException("test-failure"));
+
+        assertThrows(IllegalStateException.class, () -> repo.findById(wishlistId, ReadConsistency.EVENTUAL));
+        assertThat(repo.hedgesSent(), is(1L));
+    }
+
+    private HedgingRepository hedging(double percentile, double budgetRatio) {
+        return new HedgingRepository(delegate, executor, percentile, Duration.ofNanos(1), budgetRatio, clock::get);
+    }
+
+    private void warmUp(HedgingRepository repo) {
+        for (int i = 0; i < WARM_UP_READS; i++) {
+            repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        }
+    }
+
+    private long timeRead(HedgingRepository repo) {
+        long start = System.nanoTime();
+        repo.findById(wishlistId, ReadConsistency.EVENTUAL);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Every read advances the fake clock by READ_NANOS, then, if asked, sleeps for real or fails.
+     * Only the next read to start is slowed, so a hedge sent after it is fast.
+     */
+    private static class SlowRepository implements Repository {
+        private final AtomicLong clock;
+        private final AtomicBoolean slowNext = new AtomicBoolean();
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+        private volatile long slowMillis;
+        private volatile RuntimeException failure;
+
+        SlowRepository(AtomicLong clock) {
+            this.clock = clock;
+        }
+
+        void slowNext(long millis) {
+            slowMillis = millis;
+            slowNext.set(true);
+        }
+
+        void failNext(int reads, RuntimeException failure) {
+            this.failure = failure;
+            failuresLeft.set(reads);
+        }
+
+        @Override
+        public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+            clock.addAndGet(READ_NANOS);
+            if (slowNext.getAndSet(false)) {
+                try {
+                    Thread.sleep(slowMillis);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new RuntimeException(e);
+                }
+            }
+            if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw failure;
+            }
+            return Optional.of(Wishlist.rehydrate(wishlistId, UUID.randomUUID(), "test-name", List.of()));
+        }
+
+        @Override
+        public List<Wishlist> queryByOwner(UUID ownerId) {
+            return List.of();
+        }
+
+        @Override
+        public void save(Wishlist wishlist) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void commit(UnitOfWork unitOfWork) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
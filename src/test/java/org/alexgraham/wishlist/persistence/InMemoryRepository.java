@@ -0,0 +1,133 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.AtomicWishlist;
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Repository;
+import org.alexgraham.wishlist.domain.UnitOfWork;
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.alexgraham.wishlist.domain.WishlistSnapshot;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * An implementation of the wishlist.Repository that keeps wishlists in memory.
+ *
+ * Intended as a stand-in for DynamoRepository in tests and load runs. It mirrors DynamoRepository's
+ * observable behavior: stored wishlists are copies, so mutating a returned Wishlist has no effect
+ * until it is saved, and queryByOwner returns Wishlists without Items (but with their item count
+ * and last-modified time).
+ *
+ * Each Wishlist is held as an AtomicWishlist, so reads take the current snapshot without locking
+ * or copying the stored Items, and only copy into the mutable Wishlist they return. A save applies
+ * the Wishlist's changes to the held snapshot (sharing the unchanged Items) and installs it with a
+ * compare-and-set, so concurrent saves don't wait for each other. Only a commit, which must check
+ * and save all of its Wishlists together, holds the others off.
+ */
+public class InMemoryRepository implements Repository {
+
+    private final ConcurrentMap<UUID, AtomicWishlist> wishlists = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Set<UUID>> wishlistIdsByOwner = new ConcurrentHashMap<>();
+    // saves share the read lock, commits take the write lock
+    private final ReadWriteLock commitLock = new ReentrantReadWriteLock();
+
+    @Override
+    public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+        // reads are always strongly consistent
+        return snapshotOf(wishlistId).map(WishlistSnapshot::toWishlist);
+    }
+
+    @Override
+    public Optional<Long> findVersionById(UUID wishlistId, ReadConsistency consistency) {
+        return snapshotOf(wishlistId).map(WishlistSnapshot::version);
+    }
+
+    @Override
+    public Optional<List<Item>> findItemsById(UUID wishlistId, int offset, int limit, ReadConsistency consistency) {
+        return snapshotOf(wishlistId).map(snapshot -> {
+            List<Item> items = snapshot.items().asList();
+            int from = Math.min(offset, items.size());
+            return List.copyOf(items.subList(from, Math.min(from + limit, items.size())));
+        });
+    }
+
+    @Override
+    public List<Wishlist> queryByOwner(UUID ownerId) {
+        return wishlistIdsByOwner.getOrDefault(ownerId, Set.of())
+                .stream()
+                .map(wishlistId -> wishlists.get(wishlistId).get())
+                .map(snapshot -> Wishlist.rehydrate(snapshot.wishlistId(), snapshot.ownerId(), snapshot.name(), null,
+                        snapshot.items().size(), snapshot.lastModified(), snapshot.version()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void save(Wishlist wishlist) {
+        commitLock.readLock().lock();
+        try {
+            saveUnlocked(wishlist);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks every Wishlist's stored version, then saves each Wishlist in turn, so either all of
+     * them are saved or none are. Concurrent readers may observe some of the unit's Wishlists
+     * saved before the others.
+     */
+    @Override
+    public void commit(UnitOfWork unitOfWork) {
+        commitLock.writeLock().lock();
+        try {
+            unitOfWork.wishlists().forEach(wishlist ->
+                    checkStoredVersion(wishlist, snapshotOf(wishlist.wishlistId()).orElse(null)));
+            unitOfWork.wishlists().forEach(this::saveUnlocked);
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+
+    private void saveUnlocked(Wishlist wishlist) {
+        UUID wishlistId = wishlist.wishlistId();
+        // a lost race leaves a newer version behind, so the retry fails the version check
+        while (true) {
+            AtomicWishlist holder = wishlists.get(wishlistId);
+            if (holder == null) {
+                checkStoredVersion(wishlist, null);
+                if (wishlists.putIfAbsent(wishlistId, new AtomicWishlist(WishlistSnapshot.of(wishlist))) == null) {
+                    break;
+                }
+            } else {
+                WishlistSnapshot stored = holder.get();
+                checkStoredVersion(wishlist, stored);
+                if (holder.compareAndSet(stored, stored.withChangesOf(wishlist))) {
+                    break;
+                }
+            }
+        }
+        wishlistIdsByOwner.computeIfAbsent(wishlist.ownerId(), ownerId -> ConcurrentHashMap.newKeySet())
+                .add(wishlistId);
+    }
+
+    private static void checkStoredVersion(Wishlist wishlist, WishlistSnapshot stored) {
+        long storedVersion = stored == null ? 0 : stored.version();
+        if (storedVersion != wishlist.storedVersion()) {
+            throw new ConcurrentModificationException("wishlist=" + wishlist.wishlistId() +
+                    " was changed after it was read, at version=" + wishlist.storedVersion());
+        }
+    }
+
+    private Optional<WishlistSnapshot> snapshotOf(UUID wishlistId) {
+        return Optional.ofNullable(wishlists.get(wishlistId)).map(AtomicWishlist::get);
+    }
+}
@@ -0,0 +1,117 @@
+package org.alexgraham.wishlist.persistence;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A test-support interceptor for a DynamoDbClient that measures the items it reads and writes,
+ * as DynamoDB sizes them for capacity: each attribute's name plus its value.
+ *
+ * This is what the table actually transferred, whatever the Repository returned from it, so a
+ * read that should have been projected but fetched the whole item shows up. Give it to a
+ * {@link CountingRepository} to use for the bytes it reports.
+ */
+public class ItemBytesInterceptor implements ExecutionInterceptor {
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        SdkRequest request = context.request();
+        if (request instanceof PutItemRequest) {
+            bytesWritten.add(sizeOf(((PutItemRequest) request).item()));
+        } else if (request instanceof TransactWriteItemsRequest) {
+            for (TransactWriteItem item : ((TransactWriteItemsRequest) request).transactItems()) {
+                if (item.put() != null) {
+                    bytesWritten.add(sizeOf(item.put().item()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void afterUnmarshalling(Context.AfterUnmarshalling context, ExecutionAttributes executionAttributes) {
+        SdkResponse response = context.response();
+        if (response instanceof GetItemResponse && ((GetItemResponse) response).hasItem()) {
+            bytesRead.add(sizeOf(((GetItemResponse) response).item()));
+        } else if (response instanceof QueryResponse) {
+            ((QueryResponse) response).items().forEach(item -> bytesRead.add(sizeOf(item)));
+        } else if (response instanceof ScanResponse) {
+            ((ScanResponse) response).items().forEach(item -> bytesRead.add(sizeOf(item)));
+        }
+    }
+
+    static long sizeOf(Map<String, AttributeValue> item) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            size += utf8Length(attribute.getKey()) + sizeOf(attribute.getValue());
+        }
+        return size;
+    }
+
+    // per the DynamoDB item size rules: lists and maps cost 3 bytes plus 1 per element
+    private static long sizeOf(AttributeValue value) {
+        if (value.s() != null) {
+            return utf8Length(value.s());
+        } else if (value.n() != null) {
+            return sizeOfNumber(value.n());
+        } else if (value.b() != null) {
+            return value.b().asByteArray().length;
+        } else if (value.bool() != null || Boolean.TRUE.equals(value.nul())) {
+            return 1;
+        } else if (value.hasL()) {
+            long size = 3;
+            for (AttributeValue element : value.l()) {
+                size += 1 + sizeOf(element);
+            }
+            return size;
+        } else if (value.hasM()) {
+            return 3 + value.m().size() + sizeOf(value.m());
+        } else if (value.hasSs()) {
+            return value.ss().stream().mapToLong(ItemBytesInterceptor::utf8Length).sum();
+        } else if (value.hasNs()) {
+            return value.ns().stream().mapToLong(ItemBytesInterceptor::sizeOfNumber).sum();
+        } else if (value.hasBs()) {
+            return sizeOfBinaries(value.bs());
+        }
+        return 0;
+    }
+
+    // about one byte per two significant digits, plus one
+    private static long sizeOfNumber(String number) {
+        return (number.length() + 1) / 2 + 1;
+    }
+
+    private static long sizeOfBinaries(List<SdkBytes> binaries) {
+        return binaries.stream().mapToLong(binary -> binary.asByteArray().length).sum();
+    }
+
+    private static long utf8Length(String string) {
+        return string.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
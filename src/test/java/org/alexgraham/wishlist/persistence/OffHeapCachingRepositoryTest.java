@@ -0,0 +1,178 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.alexgraham.wishlist.domain.Item;
+import org.alexgraham.wishlist.domain.ReadConsistency;
+import org.alexgraham.wishlist.domain.Wishlist;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Tests for OffHeapCachingRepository, against the in-memory Repository and a fake clock.
+ *
+ * The cache is sized to two slabs that hold two small Wishlists each, so that a handful of saves
+ * is enough to recycle a slab.
+ */
+class OffHeapCachingRepositoryTest {
+    private static final int SLAB_SIZE = 200;
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    private InMemoryRepository delegate;
+    private FakeClock clock;
+    private OffHeapCachingRepository repo;
+
+    @BeforeEach
+    void setup() {
+        delegate = new InMemoryRepository();
+        clock = new FakeClock();
+        repo = new OffHeapCachingRepository(delegate, 2 * SLAB_SIZE, SLAB_SIZE, TTL, clock);
+    }
+
+    @Test
+    void savedWishlist_isReadFromCache() {
+        Wishlist wishlist = newWishlist();
+        Item item = Item.create("test-wishlist-item-A");
+        wishlist.addItem(item);
+        repo.save(wishlist);
+
+        Wishlist cached = repo.findById(wishlist.wishlistId()).get();
+
+        assertThat(cached.items().get(0).itemId(), is(item.itemId()));
+        assertThat(cached.items().get(0).details(), is(item.details()));
+        assertThat(cached.version(), is(wishlist.version()));
+        assertThat(repo.stats().hits(), is(1L));
+    }
+
+    @Test
+    void whenAllSlabsAreFull_theOldestSlabIsRecycled() {
+        List<Wishlist> wishlists = new ArrayList<>();
+        for (int i = 0; i < 5; i++) { // two per slab, so the fifth recycles the first slab
+            Wishlist wishlist = newWishlist();
+            repo.save(wishlist);
+            wishlists.add(wishlist);
+        }
+
+        OffHeapCachingRepository.Stats stats = repo.stats();
+        assertThat(stats.evictions(), is(2L));
+        assertThat(stats.entries(), is(3));
+        assertThat(stats.liveBytes(), lessThanOrEqualTo(2L * SLAB_SIZE));
+
+        assertThat(repo.findById(wishlists.get(0).wishlistId()).isPresent(), is(true)); // from the delegate
+        assertThat(repo.findById(wishlists.get(4).wishlistId()).isPresent(), is(true));
+        assertThat(repo.stats().misses(), is(1L));
+        assertThat(repo.stats().hits(), is(1L));
+    }
+
+    @Test
+    void resavedWishlist_isEvictedOnlyWithItsLatestCopy() {
+        Wishlist resaved = newWishlist();
+        repo.save(resaved);
+        repo.save(newWishlist());
+        Wishlist latest = delegate.findById(resaved.wishlistId()).get();
+        latest.addItem(Item.create("test-wishlist-item-A"));
+        repo.save(latest); // the second slab now holds the latest copy
+
+        repo.save(newWishlist()); // recycles the first slab
+
+        assertThat(repo.stats().evictions(), is(1L));
+        assertThat(repo.findById(resaved.wishlistId()).get().version(), is(latest.version()));
+        assertThat(repo.stats().hits(), is(1L));
+    }
+
+    @Test
+    void expiredEntry_isReadFromTheDelegate() {
+        Wishlist wishlist = newWishlist();
+        repo.save(wishlist);
+
+        clock.advance(TTL);
+
+        assertThat(repo.findById(wishlist.wishlistId()).isPresent(), is(true));
+        assertThat(repo.findVersionById(wishlist.wishlistId(), ReadConsistency.EVENTUAL).isPresent(), is(true));
+        assertThat(repo.stats().hits(), is(1L)); // the version was read from the refreshed entry
+        assertThat(repo.stats().misses(), is(1L));
+    }
+
+    @Test
+    void wishlistLargerThanASlab_isNotCached() {
+        Wishlist wishlist = newWishlist();
+        wishlist.addItem(Item.create("x".repeat(SLAB_SIZE)));
+        repo.save(wishlist);
+
+        assertThat(repo.findById(wishlist.wishlistId()).get().items().size(), is(1));
+        assertThat(repo.stats().entries(), is(0));
+        assertThat(repo.stats().liveBytes(), is(0L));
+        assertThat(repo.stats().misses(), is(1L));
+    }
+
+    @Test
+    void saveDuringAMissedRead_isNotOverwrittenByIt() {
+        Wishlist wishlist = newWishlist();
+        delegate.save(wishlist); // behind the cache's back, so the first read misses
+        AtomicReference<Wishlist> racingSave = new AtomicReference<>();
+        // saves a newer Wishlist through the cache after reading the old one, but before the read fills the cache
+        InMemoryRepository racingDelegate = new InMemoryRepository() {
+            @Override
+            public Optional<Wishlist> findById(UUID wishlistId, ReadConsistency consistency) {
+                Optional<Wishlist> result = delegate.findById(wishlistId, consistency);
+                if (racingSave.get() == null) {
+                    Wishlist newer = delegate.findById(wishlistId, consistency).get();
+                    newer.addItem(Item.create("test-wishlist-item-A"));
+                    racingSave.set(newer);
+                    repo.save(newer);
+                }
+                return result;
+            }
+
+            @Override
+            public void save(Wishlist wishlist) {
+                delegate.save(wishlist);
+            }
+        };
+        repo = new OffHeapCachingRepository(racingDelegate, 2 * SLAB_SIZE, SLAB_SIZE, TTL, clock);
+
+        repo.findById(wishlist.wishlistId());
+
+        assertThat(repo.findById(wishlist.wishlistId()).get().version(), is(racingSave.get().version()));
+    }
+
+    private static Wishlist newWishlist() {
+        return Wishlist.rehydrate(UUID.randomUUID(), UUID.randomUUID(), "test-name", new ArrayList<>());
+    }
+
+    private static class FakeClock extends Clock {
+        private Instant now = Instant.parse("2026-10-19T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
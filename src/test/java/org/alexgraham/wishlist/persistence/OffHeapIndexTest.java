@@ -0,0 +1,59 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for OffHeapIndex, checked against a HashMap.
+ */
+class OffHeapIndexTest {
+
+    @Test
+    void matchesHashMapUnderRandomEdits() {
+        Random random = new Random(42);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // a small id space, so that puts overwrite, removes hit and probe runs collide
+            ids.add(new UUID(random.nextInt(4), random.nextInt(1_000)));
+        }
+        Map<UUID, Long> expected = new HashMap<>();
+        OffHeapIndex index = new OffHeapIndex(1); // grows several times along the way
+
+        for (int i = 0; i < 20_000; i++) {
+            UUID id = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) > 0) {
+                long value = random.nextInt(Integer.MAX_VALUE) * 2L;
+                expected.put(id, value);
+                index.put(id, value);
+            } else {
+                assertThat(index.remove(id), is(expected.getOrDefault(id, OffHeapIndex.ABSENT)));
+                expected.remove(id);
+            }
+        }
+
+        assertThat(index.size(), is(expected.size()));
+        for (UUID id : ids) {
+            assertThat(index.get(id), is(expected.getOrDefault(id, OffHeapIndex.ABSENT)));
+        }
+    }
+
+    @Test
+    void zeroValue_isNotMistakenForAnEmptySlot() {
+        OffHeapIndex index = new OffHeapIndex(16);
+        UUID id = UUID.randomUUID();
+
+        index.put(id, 0);
+
+        assertThat(index.get(id), is(0L));
+        assertThat(index.size(), is(1));
+    }
+}
@@ -0,0 +1,83 @@
+package org.alexgraham.wishlist.persistence;
+
+import org.hamcrest.Description;
+import org.hamcrest.TypeSafeMatcher;
+
+/**
+ * A Hamcrest matcher for the most calls an operation may make to its Repository.
+ *
+ * Any kind of call not given a limit is allowed zero times, so a budget catches calls that are
+ * added as well as calls that multiply. Byte limits are optional.
+ *
+ * <pre>
+ *   RoundTrips cost = repo.measure(() -&gt; service.addItemToWishlist(wishlistId, "item"));
+ *   assertThat(cost, RoundTripBudget.atMost().reads(1).writes(1));
+ * </pre>
+ */
+public final class RoundTripBudget extends TypeSafeMatcher<RoundTrips> {
+    private long reads;
+    private long queries;
+    private long writes;
+    private long transactions;
+    private long bytesRead = Long.MAX_VALUE;
+    private long bytesWritten = Long.MAX_VALUE;
+
+    private RoundTripBudget() {
+    }
+
+    public static RoundTripBudget atMost() {
+        return new RoundTripBudget();
+    }
+
+    public RoundTripBudget reads(long reads) {
+        this.reads = reads;
+        return this;
+    }
+
+    public RoundTripBudget queries(long queries) {
+        this.queries = queries;
+        return this;
+    }
+
+    public RoundTripBudget writes(long writes) {
+        this.writes = writes;
+        return this;
+    }
+
+    public RoundTripBudget transactions(long transactions) {
+        this.transactions = transactions;
+        return this;
+    }
+
+    public RoundTripBudget bytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+        return this;
+    }
+
+    public RoundTripBudget bytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+        return this;
+    }
+
+    @Override
+    protected boolean matchesSafely(RoundTrips actual) {
+        return actual.reads <= reads
+                && actual.queries <= queries
+                && actual.writes <= writes
+                && actual.transactions <= transactions
+                && actual.bytesRead <= bytesRead
+                && actual.bytesWritten <= bytesWritten;
+    }
+
+    @Override
+    public void describeTo(Description description) {
+        description.appendText("at most reads=" + reads + " queries=" + queries + " writes=" + writes
+                + " transactions=" + transactions);
+        if (bytesRead != Long.MAX_VALUE) {
+            description.appendText(" bytesRead=" + bytesRead);
+        }
+        if (bytesWritten != Long.MAX_VALUE) {
+            description.appendText(" bytesWritten=" + bytesWritten);
+        }
+    }
+}
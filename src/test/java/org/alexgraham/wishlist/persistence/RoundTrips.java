@@ -0,0 +1,38 @@
+package org.alexgraham.wishlist.persistence;
+
+/**
+ * The calls made to a Repository, as counted by {@link CountingRepository}.
+ */
+public final class RoundTrips {
+    final long reads;
+    final long queries;
+    final long writes;
+    final long transactions;
+    final long bytesRead;
+    final long bytesWritten;
+
+    RoundTrips(long reads, long queries, long writes, long transactions, long bytesRead, long bytesWritten) {
+        this.reads = reads;
+        this.queries = queries;
+        this.writes = writes;
+        this.transactions = transactions;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+    }
+
+    RoundTrips minus(RoundTrips other) {
+        return new RoundTrips(
+                reads - other.reads,
+                queries - other.queries,
+                writes - other.writes,
+                transactions - other.transactions,
+                bytesRead - other.bytesRead,
+                bytesWritten - other.bytesWritten);
+    }
+
+    @Override
+    public String toString() {
+        return "reads=" + reads + " queries=" + queries + " writes=" + writes + " transactions=" + transactions
+                + " bytesRead=" + bytesRead + " bytesWritten=" + bytesWritten;
+    }
+}